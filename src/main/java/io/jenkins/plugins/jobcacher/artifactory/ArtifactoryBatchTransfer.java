@@ -0,0 +1,484 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jenkins.security.MasterToSlaveCallable;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Restore or save the caches of a build at once. The metadata of every cache is fetched concurrently on the
+ * controller first, then a single callable per agent transfers all the caches concurrently, sharing the connections
+ * of {@link ArtifactoryClientPool}. The total time is close to the slowest cache instead of the sum of all caches.
+ * When the metadata checks run on the agents, the controller sends no request at all for the caches of the build.
+ */
+final class ArtifactoryBatchTransfer {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryBatchTransfer.class);
+
+    /**
+     * Number of caches transferred in parallel
+     */
+    static final int PARALLELISM =
+            SystemProperties.getInteger(ArtifactoryBatchTransfer.class.getName() + ".parallelism", 4);
+
+    private final int parallelism;
+
+    ArtifactoryBatchTransfer(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Restore several caches
+     * @param caches the caches to restore, and the file to restore each one to
+     * @return the caches restored. Missing caches are skipped
+     * @throws IOException if a cache cannot be restored. The other caches are restored anyway
+     * @throws InterruptedException if interrupted
+     */
+    Set<ArtifactoryItemPath> restore(Map<ArtifactoryItemPath, FilePath> caches)
+            throws IOException, InterruptedException {
+        // Metadata checks of all caches not checked by the agents, before any download
+        Set<ArtifactoryItemPath> checked = new HashSet<>();
+        for (ArtifactoryItemPath path : caches.keySet()) {
+            if (!checkedByAgent(path)) {
+                checked.add(path);
+            }
+        }
+        Map<ArtifactoryItemPath, String> sources = resolveSources(checked);
+        Map<VirtualChannel, List<ArtifactoryItemPath>> groups = new LinkedHashMap<>();
+        Map<VirtualChannel, List<Transfer>> batches = new LinkedHashMap<>();
+        for (Map.Entry<ArtifactoryItemPath, FilePath> entry : caches.entrySet()) {
+            ArtifactoryItemPath path = entry.getKey();
+            Transfer transfer;
+            if (checkedByAgent(path)) {
+                ArtifactoryMetrics.get().recordAgentCheck();
+                transfer = new Transfer(path, null, null, entry.getValue().getRemote());
+            } else {
+                String source = sources.get(path);
+                if (source == null) {
+                    LOGGER.debug("Skipping restore of {}, not found", target(path));
+                    continue;
+                }
+                transfer = new Transfer(
+                        path,
+                        source,
+                        source.equals(target(path)) ? path.getLoadedInfo() : null,
+                        entry.getValue().getRemote());
+            }
+            VirtualChannel channel = entry.getValue().getChannel();
+            groups.computeIfAbsent(channel, c -> new ArrayList<>()).add(path);
+            batches.computeIfAbsent(channel, c -> new ArrayList<>()).add(transfer);
+        }
+        Set<ArtifactoryItemPath> restored = new HashSet<>();
+        List<String> errors = new ArrayList<>();
+        for (Map.Entry<VirtualChannel, List<Transfer>> batch : batches.entrySet()) {
+            List<ArtifactoryItemPath> paths = groups.get(batch.getKey());
+            long start = System.nanoTime();
+            List<Result> results = call(batch.getKey(), new DownloadAll(batch.getValue(), parallelism));
+            long nanos = System.nanoTime() - start;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).skipped) {
+                    LOGGER.debug("Skipping restore of {}, not found", target(paths.get(i)));
+                } else if (record(paths.get(i), ArtifactoryMetrics.COPY_TO, results.get(i), nanos, errors)) {
+                    restored.add(paths.get(i));
+                }
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new IOException("Unable to restore caches from Artifactory. Details: " + String.join(", ", errors));
+        }
+        return restored;
+    }
+
+    /**
+     * Save several caches. Like {@link ArtifactoryItemPath#copyFrom(FilePath)}, saves are coordinated by
+     * {@link ArtifactorySaveCoordinator}, and read-only caches are skipped
+     * @param caches the caches to save, and the file to save each one from
+     * @throws IOException if a cache cannot be saved. The other caches are saved anyway
+     * @throws InterruptedException if interrupted
+     */
+    void save(Map<ArtifactoryItemPath, FilePath> caches) throws IOException, InterruptedException {
+        Map<VirtualChannel, List<ArtifactoryItemPath>> groups = new LinkedHashMap<>();
+        for (Map.Entry<ArtifactoryItemPath, FilePath> entry : caches.entrySet()) {
+            if (entry.getKey().isReadOnly()) {
+                LOGGER.debug("Skipping save of read-only cache {}", entry.getKey().getPath());
+                continue;
+            }
+            groups.computeIfAbsent(entry.getValue().getChannel(), c -> new ArrayList<>())
+                    .add(entry.getKey());
+        }
+        List<String> errors = new ArrayList<>();
+        for (Map.Entry<VirtualChannel, List<ArtifactoryItemPath>> group : groups.entrySet()) {
+            saveGroup(group.getKey(), caches, group.getValue(), errors);
+        }
+        if (!errors.isEmpty()) {
+            throw new IOException("Unable to upload caches to Artifactory. Details: " + String.join(", ", errors));
+        }
+    }
+
+    private void saveGroup(
+            VirtualChannel channel,
+            Map<ArtifactoryItemPath, FilePath> caches,
+            List<ArtifactoryItemPath> paths,
+            List<String> errors)
+            throws IOException, InterruptedException {
+        // Leases are taken in the order of their keys, so two batches never wait for each other in a cycle
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(i -> key(paths.get(i))));
+        Map<Integer, ArtifactorySaveCoordinator.Lease> leases = new LinkedHashMap<>();
+        Set<String> keys = new HashSet<>();
+        try {
+            for (int i : order) {
+                if (!keys.add(key(paths.get(i)))) {
+                    LOGGER.info("Skipping save of {}, saved twice by the same batch", target(paths.get(i)));
+                    continue;
+                }
+                ArtifactorySaveCoordinator.Lease lease =
+                        ArtifactorySaveCoordinator.get().acquire(key(paths.get(i)));
+                if (lease == null) {
+                    LOGGER.info("Skipping save of {}, superseded by a newer save", target(paths.get(i)));
+                } else {
+                    leases.put(i, lease);
+                }
+            }
+            List<Transfer> transfers = new ArrayList<>();
+            List<Integer> uploaded = new ArrayList<>();
+            for (Map.Entry<Integer, ArtifactorySaveCoordinator.Lease> entry : leases.entrySet()) {
+                ArtifactoryItemPath path = paths.get(entry.getKey());
+                String previous = entry.getValue().getUploaded();
+                // The agent hashes each cache and skips the unchanged ones, checking if they are still stored
+                if (previous != null && !checkedByAgent(path) && !path.isStored()) {
+                    previous = null;
+                }
+                path.resetInfo();
+                Transfer transfer = new Transfer(path, target(path), null, caches.get(path).getRemote());
+                transfer.previous = previous;
+                transfer.checkStored = checkedByAgent(path);
+                transfers.add(transfer);
+                uploaded.add(entry.getKey());
+            }
+            if (transfers.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            List<Result> results;
+            try {
+                results = call(channel, new UploadAll(transfers, parallelism));
+            } finally {
+                // The uploads ran on the agent, so the metadata cached by this JVM is stale
+                for (int index : uploaded) {
+                    paths.get(index).getClient().invalidate(target(paths.get(index)));
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            for (int i = 0; i < results.size(); i++) {
+                int index = uploaded.get(i);
+                if (results.get(i).checked) {
+                    ArtifactoryMetrics.get().recordAgentCheck();
+                }
+                if (results.get(i).skipped) {
+                    LOGGER.info("Skipping save of {}, content already uploaded", target(paths.get(index)));
+                    leases.get(index).skipped();
+                } else if (record(paths.get(index), ArtifactoryMetrics.COPY_FROM, results.get(i), nanos, errors)) {
+                    leases.get(index).saved(results.get(i).hash);
+                }
+            }
+        } finally {
+            leases.values().forEach(ArtifactorySaveCoordinator.Lease::close);
+        }
+    }
+
+    /**
+     * Find the path to restore of each cache, concurrently
+     */
+    private Map<ArtifactoryItemPath, String> resolveSources(Set<ArtifactoryItemPath> paths)
+            throws IOException, InterruptedException {
+        Map<ArtifactoryItemPath, String> sources = new LinkedHashMap<>();
+        if (paths.isEmpty()) {
+            return sources;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, paths.size()),
+                new NamingThreadFactory(new DaemonThreadFactory(), "ArtifactoryBatchTransfer"));
+        try {
+            Map<ArtifactoryItemPath, Future<String>> futures = new LinkedHashMap<>();
+            for (ArtifactoryItemPath path : paths) {
+                futures.put(path, executor.submit(path::resolveSource));
+            }
+            for (Map.Entry<ArtifactoryItemPath, Future<String>> future : futures.entrySet()) {
+                try {
+                    sources.put(future.getKey(), future.getValue().get());
+                } catch (ExecutionException e) {
+                    throw new IOException(
+                            String.format("Failed to check cache %s", target(future.getKey())), e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return sources;
+    }
+
+    /**
+     * Record the metrics of a transfer, and its error if it failed
+     * @return true if the transfer succeeded
+     */
+    private static boolean record(
+            ArtifactoryItemPath path, String operation, Result result, long nanos, List<String> errors) {
+        ArtifactoryMetrics.get().record(path.getFullName(), operation, result.size, nanos, result.error != null);
+        if (result.error != null) {
+            errors.add(result.error);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the existence and metadata checks of a cache run on the agent. Read-only caches of other
+     * branches are always checked by the controller
+     */
+    private static boolean checkedByAgent(ArtifactoryItemPath path) {
+        return path.getSettings().isAgentMetadata() && !path.isReadOnly();
+    }
+
+    private static String key(ArtifactoryItemPath path) {
+        return ArtifactoryMetadataCache.key(path.getClient().getConfig(), target(path));
+    }
+
+    private static String target(ArtifactoryItemPath path) {
+        return String.format("%s/%s", path.getFullName(), path.getPath());
+    }
+
+    private static <V> V call(VirtualChannel channel, MasterToSlaveCallable<V, IOException> callable)
+            throws IOException, InterruptedException {
+        return channel != null ? channel.call(callable) : callable.call();
+    }
+
+    /**
+     * Run a task per file on the agent, in parallel
+     */
+    private static <V> List<V> runAll(int parallelism, List<Callable<V>> tasks)
+            throws IOException, InterruptedException {
+        List<V> values = new ArrayList<>();
+        if (tasks.isEmpty()) {
+            return values;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, tasks.size()),
+                new NamingThreadFactory(new DaemonThreadFactory(), "ArtifactoryBatchTransfer"));
+        try {
+            for (Future<V> future : executor.invokeAll(tasks)) {
+                try {
+                    values.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return values;
+    }
+
+    /**
+     * A cache to transfer between a file of the agent and a path of the repository
+     */
+    private static final class Transfer implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ArtifactoryClient.ArtifactoryConfig config;
+        private final ArtifactoryTransferSettings settings;
+        private final String fullName;
+        private final String cachePath;
+        private final String file;
+
+        /**
+         * Path in the repository. Null when the agent finds the cache to restore itself
+         */
+        private final String path;
+
+        private final ArtifactoryItemInfo info;
+
+        /**
+         * SHA-256 of the content last uploaded for the cache to save, null if unknown
+         */
+        private String previous;
+
+        /**
+         * Check that the content last uploaded is still stored before skipping its upload
+         */
+        private boolean checkStored;
+
+        private Transfer(ArtifactoryItemPath itemPath, String path, ArtifactoryItemInfo info, String file) {
+            this.config = itemPath.getClient().getConfig();
+            this.settings = itemPath.getSettings();
+            this.fullName = itemPath.getFullName();
+            this.cachePath = itemPath.getPath();
+            this.path = path;
+            this.info = info;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Outcome of a transfer. Failures are reported per cache, so one failure doesn't hide the other caches
+     */
+    private static final class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final Result SKIPPED = new Result(0, null, true, null, false);
+
+        private final long size;
+        private final String error;
+
+        /**
+         * True if the cache to restore is missing, or the cache to save already stored
+         */
+        private final boolean skipped;
+
+        /**
+         * SHA-256 of the saved cache
+         */
+        private final String hash;
+
+        /**
+         * True if the agent checked that the cache to save is still stored
+         */
+        private final boolean checked;
+
+        private Result(long size, String error, boolean skipped, String hash, boolean checked) {
+            this.size = size;
+            this.error = error;
+            this.skipped = skipped;
+            this.hash = hash;
+            this.checked = checked;
+        }
+
+        private static Result done(long size) {
+            return new Result(size, null, false, null, false);
+        }
+
+        private static Result saved(ArtifactoryUploader.Saved saved) {
+            return new Result(saved.size, null, saved.skipped, saved.hash, saved.checked);
+        }
+
+        private static Result failed(Transfer transfer, Exception e) {
+            return new Result(
+                    0,
+                    String.format(
+                            "%s: %s",
+                            transfer.path != null ? transfer.path : transfer.fullName + "/" + transfer.cachePath,
+                            e.getMessage()),
+                    false,
+                    null,
+                    false);
+        }
+    }
+
+    /**
+     * Master to slave callable that downloads several caches in parallel. Return the result of each one, in order
+     */
+    private static final class DownloadAll extends MasterToSlaveCallable<List<Result>, IOException> {
+
+        private final List<Transfer> transfers;
+        private final int parallelism;
+
+        private DownloadAll(List<Transfer> transfers, int parallelism) {
+            this.transfers = transfers;
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        public List<Result> call() throws IOException {
+            List<Callable<Result>> tasks = new ArrayList<>();
+            for (Transfer transfer : transfers) {
+                tasks.add(() -> {
+                    File f = new File(transfer.file);
+                    try (ArtifactoryClient client = new ArtifactoryClient(transfer.config)) {
+                        String path = transfer.path;
+                        ArtifactoryItemInfo info = transfer.info;
+                        if (path == null) {
+                            ArtifactoryItemPath itemPath = new ArtifactoryItemPath(
+                                    client, transfer.fullName, transfer.cachePath, transfer.settings);
+                            path = itemPath.resolveSource();
+                            if (path == null) {
+                                return Result.SKIPPED;
+                            }
+                            info = itemPath.getLoadedInfo();
+                            info = info != null && info.getPath().equals(path) ? info : null;
+                        }
+                        new ArtifactoryDownloader(client, transfer.settings).download(path, f, info);
+                        return Result.done(f.length());
+                    } catch (Exception e) {
+                        return Result.failed(transfer, e);
+                    }
+                });
+            }
+            try {
+                return runAll(parallelism, tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while restoring caches", e);
+            }
+        }
+    }
+
+    /**
+     * Master to slave callable that uploads several caches in parallel. Return the result of each one, in order
+     */
+    private static final class UploadAll extends MasterToSlaveCallable<List<Result>, IOException> {
+
+        private final List<Transfer> transfers;
+        private final int parallelism;
+
+        private UploadAll(List<Transfer> transfers, int parallelism) {
+            this.transfers = transfers;
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        public List<Result> call() throws IOException {
+            List<Callable<Result>> tasks = new ArrayList<>();
+            for (Transfer transfer : transfers) {
+                tasks.add(() -> {
+                    File f = new File(transfer.file);
+                    try (ArtifactoryClient client = new ArtifactoryClient(transfer.config)) {
+                        return Result.saved(new ArtifactoryUploader(client, transfer.settings)
+                                .save(f, transfer.path, transfer.previous, transfer.checkStored));
+                    } catch (Exception e) {
+                        return Result.failed(transfer, e);
+                    }
+                });
+            }
+            try {
+                return runAll(parallelism, tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while saving caches", e);
+            }
+        }
+    }
+}
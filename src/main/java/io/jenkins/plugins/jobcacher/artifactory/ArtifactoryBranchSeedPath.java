@@ -0,0 +1,153 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import hudson.FilePath;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import jenkins.util.SystemProperties;
+
+/**
+ * Read-only cache of another branch, used to seed the caches of a new branch. The cache of the requested branch is
+ * preferred, then the cache of the configured default branch, then the most recently updated cache of the other
+ * branches of the same multibranch project. All of them are found with a single search. Saving or deleting through
+ * this path never touches the seed branch.
+ */
+public class ArtifactoryBranchSeedPath extends ArtifactoryItemPath {
+
+    /**
+     * Maximum number of branches considered when looking for a seed
+     */
+    static final int MAX_BRANCHES =
+            SystemProperties.getInteger(ArtifactoryBranchSeedPath.class.getName() + ".maxBranches", 1000);
+
+    private final String parentFolder;
+    private final String ownBranch;
+    private final List<String> preferredBranches;
+
+    /**
+     * Seed found, null until resolved
+     */
+    private ArtifactoryItemPath seed;
+
+    private boolean seedResolved;
+
+    /**
+     * @param client the client
+     * @param parentFolder the folder of the multibranch project
+     * @param ownBranch the branch being built, never used as a seed
+     * @param preferredBranches the branches tried first, in order
+     * @param path the path of the cache
+     * @param settings the transfer settings
+     */
+    public ArtifactoryBranchSeedPath(
+            ArtifactoryClient client,
+            String parentFolder,
+            String ownBranch,
+            List<String> preferredBranches,
+            String path,
+            ArtifactoryTransferSettings settings) {
+        super(
+                client,
+                String.format(
+                        "%s/%s", parentFolder, preferredBranches.isEmpty() ? ownBranch : preferredBranches.get(0)),
+                path,
+                settings);
+        this.parentFolder = parentFolder;
+        this.ownBranch = ownBranch;
+        this.preferredBranches = new ArrayList<>(preferredBranches);
+    }
+
+    /**
+     * Find the cache to restore
+     * @return the cache of the seed branch, or null if no branch has this cache
+     * @throws IOException if the search fails
+     */
+    public synchronized ArtifactoryItemPath getSeed() throws IOException {
+        if (!seedResolved) {
+            seed = resolveSeed();
+            seedResolved = true;
+        }
+        return seed;
+    }
+
+    private ArtifactoryItemPath resolveSeed() throws IOException {
+        List<ArtifactoryItemInfo> candidates = getClient().findInSubFolders(parentFolder, getPath(), MAX_BRANCHES);
+        String found = null;
+        for (String branch : preferredBranches) {
+            if (candidates.stream().anyMatch(candidate -> branch.equals(branchOf(candidate)))) {
+                found = branch;
+                break;
+            }
+        }
+        if (found == null) {
+            // Candidates are sorted by modification, most recent first
+            found = candidates.stream()
+                    .map(this::branchOf)
+                    .filter(branch -> !Objects.equals(branch, ownBranch))
+                    .findFirst()
+                    .orElse(null);
+        }
+        if (found == null) {
+            return null;
+        }
+        LOGGER.info("Seeding cache {} of branch {} from branch {}", getPath(), ownBranch, found);
+        return new ArtifactoryItemPath(
+                getClient(), String.format("%s/%s", parentFolder, found), getPath(), getSettings());
+    }
+
+    private String branchOf(ArtifactoryItemInfo info) {
+        String relative = info.getPath().substring(parentFolder.length() + 1);
+        return relative.substring(0, relative.indexOf('/'));
+    }
+
+    @Override
+    public ArtifactoryItemPath child(String childPath) {
+        return new ArtifactoryBranchSeedPath(
+                getClient(),
+                parentFolder,
+                ownBranch,
+                preferredBranches,
+                String.format("%s/%s", getPath(), childPath),
+                getSettings());
+    }
+
+    @Override
+    public boolean exists() throws IOException, InterruptedException {
+        try {
+            return getSeed() != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void copyTo(FilePath target) throws IOException, InterruptedException {
+        ArtifactoryItemPath found = getSeed();
+        if (found == null) {
+            throw new IOException(String.format("No branch of %s has the cache %s", parentFolder, getPath()));
+        }
+        found.copyTo(target);
+    }
+
+    @Override
+    String resolveSource() throws IOException {
+        ArtifactoryItemPath found = getSeed();
+        return found != null ? found.resolveSource() : null;
+    }
+
+    @Override
+    boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public void copyFrom(FilePath source) {
+        LOGGER.warn("Not saving cache {} to the seed branch of {}, seeds are read-only", getPath(), ownBranch);
+    }
+
+    @Override
+    public void deleteRecursive() {
+        LOGGER.warn("Not deleting cache {} of the seed branch of {}, seeds are read-only", getPath(), ownBranch);
+    }
+}
@@ -0,0 +1,157 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import hudson.Functions;
+import hudson.Util;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import jenkins.util.SystemProperties;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+
+/**
+ * Paged listing of the files of a cache. Each page is fetched with a single bounded search, so browsing a cache with
+ * thousands of files never lists it whole. Rendered pages are kept shortly, as the same page is often reloaded.
+ */
+final class ArtifactoryCacheBrowser {
+
+    /**
+     * Number of files per page
+     */
+    static final int PAGE_SIZE =
+            Math.max(1, SystemProperties.getInteger(ArtifactoryCacheBrowser.class.getName() + ".pageSize", 100));
+
+    /**
+     * Time to live of a rendered page
+     */
+    static final long TTL_MS = TimeUnit.SECONDS.toMillis(
+            SystemProperties.getLong(ArtifactoryCacheBrowser.class.getName() + ".ttlSeconds", 30L));
+
+    private static final int MAX_PAGES = 100;
+
+    private static final Map<String, RenderedPage> PAGES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RenderedPage> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    private final ArtifactoryClient client;
+    private final String root;
+
+    ArtifactoryCacheBrowser(ArtifactoryClient client, String root) {
+        this.client = client;
+        this.root = root;
+    }
+
+    /**
+     * @param start the offset of the first file of the page
+     * @return the HTML page
+     */
+    HttpResponse page(long start) {
+        long offset = Math.max(0, start);
+        return new HttpResponse() {
+            @Override
+            public void generateResponse(StaplerRequest2 req, StaplerResponse2 rsp, Object node) throws IOException {
+                rsp.setContentType("text/html;charset=UTF-8");
+                try (PrintWriter writer = rsp.getWriter()) {
+                    writer.write(render(offset));
+                }
+            }
+        };
+    }
+
+    String render(long offset) throws IOException {
+        String key = ArtifactoryMetadataCache.key(client.getConfig(), root) + "|" + offset;
+        long now = System.currentTimeMillis();
+        synchronized (PAGES) {
+            RenderedPage page = PAGES.get(key);
+            if (page != null && page.expiresAt > now) {
+                return page.html;
+            }
+        }
+        // One more file tells if there is a next page
+        List<ArtifactoryItemInfo> files = client.listPage(
+                root,
+                offset,
+                PAGE_SIZE + 1,
+                EnumSet.of(
+                        ArtifactoryClient.ListField.SIZE,
+                        ArtifactoryClient.ListField.MODIFIED,
+                        ArtifactoryClient.ListField.DOWNLOADED));
+        String html = render(offset, files);
+        synchronized (PAGES) {
+            PAGES.put(key, new RenderedPage(html, now + TTL_MS));
+        }
+        return html;
+    }
+
+    private String render(long offset, List<ArtifactoryItemInfo> files) {
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html><html><head><title>")
+                .append(Util.escape(root))
+                .append("</title></head><body><h1>")
+                .append(Util.escape(root))
+                .append("</h1>");
+        if (files.isEmpty()) {
+            html.append("<p>No cached files</p>");
+        } else {
+            html.append("<table class=\"jenkins-table\"><thead><tr><th>File</th><th>Size</th><th>Last modified</th>")
+                    .append("<th>Last downloaded</th></tr></thead><tbody>");
+            for (ArtifactoryItemInfo file : files.subList(0, Math.min(files.size(), PAGE_SIZE))) {
+                String path = file.getPath();
+                String relative = path.startsWith(root + "/") ? path.substring(root.length() + 1) : path;
+                html.append("<tr><td>")
+                        .append(Util.escape(relative))
+                        .append("</td><td>")
+                        .append(Functions.humanReadableByteSize(file.getSize()))
+                        .append("</td><td>")
+                        .append(formatTime(file.getLastModified()))
+                        .append("</td><td>")
+                        .append(formatTime(file.getLastDownloaded()))
+                        .append("</td></tr>");
+            }
+            html.append("</tbody></table>");
+        }
+        html.append("<p>");
+        if (offset > 0) {
+            html.append("<a href=\"?start=")
+                    .append(Math.max(0, offset - PAGE_SIZE))
+                    .append("\">Previous</a> ");
+        }
+        if (files.size() > PAGE_SIZE) {
+            html.append("<a href=\"?start=").append(offset + PAGE_SIZE).append("\">Next</a>");
+        }
+        html.append("</p></body></html>");
+        return html.toString();
+    }
+
+    private static String formatTime(long time) {
+        return time > 0 ? Instant.ofEpochMilli(time).toString() : "-";
+    }
+
+    /**
+     * Drop the rendered pages, for tests
+     */
+    static void clear() {
+        synchronized (PAGES) {
+            PAGES.clear();
+        }
+    }
+
+    private static final class RenderedPage {
+        private final String html;
+        private final long expiresAt;
+
+        private RenderedPage(String html, long expiresAt) {
+            this.html = html;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Checksums of an artifact as known by Artifactory
+ */
+public final class ArtifactoryChecksums implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String sha1;
+    private final String sha256;
+
+    public ArtifactoryChecksums(String sha1, String sha256) {
+        this.sha1 = sha1;
+        this.sha256 = sha256;
+    }
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * Compute the SHA-1 and SHA-256 of a file by reading it once
+     * @param file the file
+     * @return the checksums
+     * @throws IOException if the file cannot be read
+     */
+    public static ArtifactoryChecksums compute(Path file) throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            return compute(is);
+        }
+    }
+
+    /**
+     * Compute the SHA-1 and SHA-256 of a stream by reading it once. The stream is not closed
+     * @param is the stream
+     * @return the checksums
+     * @throws IOException if the stream cannot be read
+     */
+    public static ArtifactoryChecksums compute(InputStream is) throws IOException {
+        MessageDigest sha1 = digest("SHA-1");
+        MessageDigest sha256 = digest("SHA-256");
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            sha1.update(buffer, 0, read);
+            sha256.update(buffer, 0, read);
+        }
+        return new ArtifactoryChecksums(toHex(sha1.digest()), toHex(sha256.digest()));
+    }
+
+    static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not available", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("sha1=%s, sha256=%s", sha1, sha256);
+    }
+}
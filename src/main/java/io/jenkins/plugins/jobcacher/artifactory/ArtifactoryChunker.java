@@ -0,0 +1,101 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Split of an archive into content-defined chunks. Boundaries are found with a gear rolling hash, so they follow the
+ * content: an insertion in the archive only changes the chunks around it, and the other chunks keep their checksum.
+ * Chunks are between a quarter and four times the average size.
+ */
+final class ArtifactoryChunker {
+
+    /**
+     * Random values of the bytes. Seeded, so every agent finds the same boundaries
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x6a6f62636163686eL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private static final int MIN_AVERAGE_SIZE = 4096;
+
+    private final long minSize;
+    private final long maxSize;
+    private final long mask;
+
+    /**
+     * @param averageSize the average size of the chunks, rounded down to a power of two
+     */
+    ArtifactoryChunker(long averageSize) {
+        long average = Long.highestOneBit(Math.max(averageSize, MIN_AVERAGE_SIZE));
+        int bits = Long.numberOfTrailingZeros(average);
+        this.minSize = average / 4;
+        this.maxSize = average * 4;
+        // The high bits of the hash depend on the most bytes
+        this.mask = ((1L << bits) - 1) << (Long.SIZE - bits);
+    }
+
+    /**
+     * Find the chunks of a file
+     * @param file the file to split
+     * @return the chunks, covering the whole file in order
+     * @throws IOException if the file cannot be read
+     */
+    List<Chunk> split(File file) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long offset = 0;
+        long start = 0;
+        long hash = 0;
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            byte[] buffer = new byte[1024 * 1024];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+                    offset++;
+                    long length = offset - start;
+                    if (length >= minSize && ((hash & mask) == 0 || length >= maxSize)) {
+                        chunks.add(new Chunk(start, length));
+                        start = offset;
+                        hash = 0;
+                    }
+                }
+            }
+        }
+        if (offset > start) {
+            chunks.add(new Chunk(start, offset - start));
+        }
+        return chunks;
+    }
+
+    /**
+     * A range of the archive
+     */
+    static final class Chunk {
+        private final long offset;
+        private final long length;
+
+        Chunk(long offset, long length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        long getLength() {
+            return length;
+        }
+    }
+}
@@ -2,18 +2,39 @@ package io.jenkins.plugins.jobcacher.artifactory;
 
 import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.Secret;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
 import org.jfrog.artifactory.client.*;
-import org.jfrog.artifactory.client.model.File;
-import org.jfrog.filespecs.FileSpec;
+import org.jfrog.artifactory.client.impl.ArtifactoryRequestImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,17 +42,27 @@ public class ArtifactoryClient implements AutoCloseable {
 
     public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryClient.class);
 
+    /**
+     * Number of files fetched per request when listing a folder
+     */
+    static final int LIST_PAGE_SIZE =
+            SystemProperties.getInteger(ArtifactoryClient.class.getName() + ".listPageSize", 1000);
+
     private final ArtifactoryConfig config;
-    private final Artifactory artifactory;
+    private final ArtifactoryClientPool pool;
+    private final ArtifactoryMetadataCache metadataCache;
+    private final ArtifactoryMetrics metrics;
 
     public ArtifactoryClient(
             @NonNull String serverUrl, @NonNull String repository, @NonNull UsernamePasswordCredentials credentials) {
-        this.config = new ArtifactoryConfig(serverUrl, repository, credentials);
-        this.artifactory = buildArtifactory();
+        this(new ArtifactoryConfig(serverUrl, repository, credentials));
     }
 
     public ArtifactoryClient(@NonNull ArtifactoryConfig config) {
-        this(config.getServerUrl(), config.getRepository(), config.getCredentials());
+        this.config = config;
+        this.pool = ArtifactoryClientPool.get();
+        this.metadataCache = ArtifactoryMetadataCache.get();
+        this.metrics = ArtifactoryMetrics.get();
     }
 
     public ArtifactoryConfig getConfig() {
@@ -45,13 +76,126 @@ public class ArtifactoryClient implements AutoCloseable {
      * @throws IOException if the file cannot be uploaded
      */
     public void uploadArtifact(Path file, String targetPath) throws IOException {
-        UploadableArtifact artifact =
-                artifactory.repository(this.config.repository).upload(urlEncodeParts(targetPath), file.toFile());
-        artifact.withSize(Files.size(file));
-        artifact.withListener(
-                (bytesRead, totalBytes) -> LOGGER.trace(String.format("Uploaded %d/%d", bytesRead, totalBytes)));
-        artifact.doUpload();
-        LOGGER.trace(String.format("Uploaded %s to %s", file, targetPath));
+        uploadArtifact(file, targetPath, Map.of());
+    }
+
+    /**
+     * Upload an artifact to the repository with properties
+     * @param file the file to upload
+     * @param targetPath the path to upload the file to
+     * @param properties the properties of the artifact
+     * @throws IOException if the file cannot be uploaded
+     */
+    public void uploadArtifact(Path file, String targetPath, Map<String, String> properties) throws IOException {
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_UPLOAD);
+                ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+            long size = Files.size(file);
+            UploadableArtifact artifact = lease.artifactory()
+                    .repository(this.config.repository)
+                    .upload(urlEncodeParts(targetPath), file.toFile());
+            artifact.withSize(size);
+            properties.forEach(artifact::withProperty);
+            artifact.withListener(new UploadProgress());
+            artifact.doUpload();
+            timer.succeeded(size);
+        } finally {
+            invalidate(targetPath);
+        }
+        LOGGER.trace("Uploaded {} to {}", file, targetPath);
+    }
+
+    /**
+     * Upload the content of a stream to the repository
+     * @param content the content to upload
+     * @param size the size of the content
+     * @param targetPath the path to upload the content to
+     * @throws IOException if the content cannot be uploaded
+     */
+    public void uploadArtifact(InputStream content, long size, String targetPath) throws IOException {
+        uploadArtifact(content, size, targetPath, Map.of());
+    }
+
+    /**
+     * Upload the content of a stream to the repository with properties
+     * @param content the content to upload
+     * @param size the size of the content
+     * @param targetPath the path to upload the content to
+     * @param properties the properties of the artifact
+     * @throws IOException if the content cannot be uploaded
+     */
+    public void uploadArtifact(InputStream content, long size, String targetPath, Map<String, String> properties)
+            throws IOException {
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_UPLOAD);
+                ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+            UploadableArtifact artifact =
+                    lease.artifactory().repository(this.config.repository).upload(urlEncodeParts(targetPath), content);
+            artifact.withSize(size);
+            properties.forEach(artifact::withProperty);
+            artifact.withListener(new UploadProgress());
+            artifact.doUpload();
+            timer.succeeded(size);
+        } finally {
+            invalidate(targetPath);
+        }
+        LOGGER.trace("Uploaded {} bytes to {}", size, targetPath);
+    }
+
+    /**
+     * Deploy an artifact by checksum only, without sending its content
+     * @param targetPath the path to deploy the artifact to
+     * @param checksums the checksums of the artifact
+     * @return true if the artifact was deployed, false if Artifactory doesn't know the checksum
+     * @throws IOException if the artifact cannot be deployed
+     */
+    public boolean deployByChecksum(String targetPath, ArtifactoryChecksums checksums) throws IOException {
+        return deployByChecksum(targetPath, checksums, Map.of());
+    }
+
+    /**
+     * Deploy an artifact by checksum only with properties, without sending its content
+     * @param targetPath the path to deploy the artifact to
+     * @param checksums the checksums of the artifact
+     * @param properties the properties of the artifact, sent as matrix parameters
+     * @return true if the artifact was deployed, false if Artifactory doesn't know the checksum
+     * @throws IOException if the artifact cannot be deployed
+     */
+    public boolean deployByChecksum(String targetPath, ArtifactoryChecksums checksums, Map<String, String> properties)
+            throws IOException {
+        StringBuilder matrixParams = new StringBuilder();
+        properties.forEach((name, value) -> matrixParams
+                .append(';')
+                .append(urlEncodeParts(name))
+                .append('=')
+                .append(urlEncodeParts(value)));
+        ArtifactoryRequest request = new ArtifactoryRequestImpl()
+                .method(ArtifactoryRequest.Method.PUT)
+                .apiUrl(String.format("%s/%s%s", this.config.repository, urlEncodeParts(targetPath), matrixParams))
+                .requestType(ArtifactoryRequest.ContentType.TEXT)
+                .requestBody("")
+                .addHeader("X-Checksum-Deploy", "true")
+                .addHeader("X-Checksum-Sha1", checksums.getSha1())
+                .addHeader("X-Checksum-Sha256", checksums.getSha256());
+        int status;
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_DEPLOY_BY_CHECKSUM)) {
+            try (ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+                status = lease.artifactory().restCall(request).getStatusLine().getStatusCode();
+            } catch (HttpResponseException e) {
+                status = e.getStatusCode();
+            }
+            if (status == HttpStatus.SC_NOT_FOUND) {
+                LOGGER.trace("Checksum {} unknown. Cannot deploy {} by checksum", checksums, targetPath);
+                timer.succeeded();
+                return false;
+            }
+            if (status < 200 || status >= 300) {
+                throw new IOException(
+                        String.format("Failed to deploy %s by checksum. Status %d", targetPath, status));
+            }
+            timer.succeeded();
+        }
+        invalidate(targetPath);
+        LOGGER.trace("Deployed {} by checksum {}", targetPath, checksums);
+        return true;
     }
 
     /**
@@ -59,7 +203,13 @@ public class ArtifactoryClient implements AutoCloseable {
      * @param targetPath the path of the artifact to delete
      */
     public void deleteArtifact(String targetPath) {
-        artifactory.repository(this.config.repository).delete(urlEncodeParts(targetPath));
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_DELETE);
+                ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+            lease.artifactory().repository(this.config.repository).delete(urlEncodeParts(targetPath));
+            timer.succeeded();
+        } finally {
+            invalidate(targetPath);
+        }
     }
 
     /**
@@ -68,8 +218,16 @@ public class ArtifactoryClient implements AutoCloseable {
      * @param targetPath the target path
      */
     public void move(String sourcePath, String targetPath) {
-        ItemHandle sourceItem = artifactory.repository(this.config.repository).folder(urlEncodeParts(sourcePath));
-        sourceItem.move(this.config.repository, urlEncodeParts(targetPath));
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_MOVE);
+                ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+            ItemHandle sourceItem =
+                    lease.artifactory().repository(this.config.repository).folder(urlEncodeParts(sourcePath));
+            sourceItem.move(this.config.repository, urlEncodeParts(targetPath));
+            timer.succeeded();
+        } finally {
+            invalidate(sourcePath);
+            invalidate(targetPath);
+        }
     }
 
     /**
@@ -78,8 +236,15 @@ public class ArtifactoryClient implements AutoCloseable {
      * @param targetPath the target path
      */
     public void copy(String sourcePath, String targetPath) {
-        ItemHandle sourceItem = artifactory.repository(this.config.repository).folder(urlEncodeParts(sourcePath));
-        sourceItem.copy(this.config.repository, targetPath);
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_COPY);
+                ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+            ItemHandle sourceItem =
+                    lease.artifactory().repository(this.config.repository).folder(urlEncodeParts(sourcePath));
+            sourceItem.copy(this.config.repository, urlEncodeParts(targetPath));
+            timer.succeeded();
+        } finally {
+            invalidate(targetPath);
+        }
     }
 
     /**
@@ -89,9 +254,158 @@ public class ArtifactoryClient implements AutoCloseable {
      * @throws IOException if the artifact cannot be downloaded
      */
     public InputStream downloadArtifact(String targetPath) throws IOException {
-        DownloadableArtifact artifact =
-                artifactory.repository(this.config.repository).download(urlEncodeParts(targetPath));
-        return artifact.doDownload();
+        ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_DOWNLOAD);
+        ArtifactoryClientPool.Lease lease = pool.lease(config);
+        try {
+            DownloadableArtifact artifact =
+                    lease.artifactory().repository(this.config.repository).download(urlEncodeParts(targetPath));
+            InputStream in = new LeasedInputStream(artifact.doDownload(), lease, null);
+            timer.succeeded();
+            return in;
+        } catch (IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        } finally {
+            timer.close();
+        }
+    }
+
+    /**
+     * Download an artifact without updating its download statistics, so that reading it for maintenance doesn't
+     * count as a use of the cache
+     * @param targetPath the path of the artifact to download
+     * @return the input stream of the artifact
+     * @throws IOException if the artifact cannot be downloaded
+     */
+    public InputStream downloadUntracked(String targetPath) throws IOException {
+        ArtifactoryRequest request = new ArtifactoryRequestImpl()
+                .method(ArtifactoryRequest.Method.GET)
+                .apiUrl(String.format("%s/%s", this.config.repository, urlEncodeParts(targetPath)))
+                .addQueryParam("skipUpdateStats", "true");
+        ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_DOWNLOAD);
+        ArtifactoryClientPool.Lease lease = pool.lease(config);
+        ArtifactoryStreamingResponse response = null;
+        try {
+            response = lease.artifactory().streamingRestCall(request);
+            int status = response.getStatusLine().getStatusCode();
+            if (status != HttpStatus.SC_OK) {
+                throw new IOException(String.format("Failed to download %s. Status %d", targetPath, status));
+            }
+            timer.succeeded();
+            return new LeasedInputStream(response.getInputStream(), lease, response);
+        } catch (IOException | RuntimeException e) {
+            if (response != null) {
+                closeQuietly(response);
+            }
+            lease.close();
+            throw e;
+        } finally {
+            timer.close();
+        }
+    }
+
+    /**
+     * Download a byte range of an artifact from the repository
+     * @param targetPath the path of the artifact to download
+     * @param start the first byte of the range
+     * @param end the last byte of the range, inclusive
+     * @return the input stream of the range
+     * @throws RangeNotSupportedException if the server doesn't honor the range
+     * @throws IOException if the range cannot be downloaded
+     */
+    public InputStream downloadRange(String targetPath, long start, long end) throws IOException {
+        ArtifactoryRequest request = new ArtifactoryRequestImpl()
+                .method(ArtifactoryRequest.Method.GET)
+                .apiUrl(String.format("%s/%s", this.config.repository, urlEncodeParts(targetPath)))
+                .addHeader("Range", String.format("bytes=%d-%d", start, end));
+        ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_DOWNLOAD);
+        ArtifactoryClientPool.Lease lease = pool.lease(config);
+        ArtifactoryStreamingResponse response = null;
+        try {
+            response = lease.artifactory().streamingRestCall(request);
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_PARTIAL_CONTENT) {
+                timer.succeeded();
+                return new LeasedInputStream(response.getInputStream(), lease, response);
+            }
+            closeQuietly(response);
+            lease.close();
+            if (status == HttpStatus.SC_OK) {
+                throw new RangeNotSupportedException(
+                        String.format("Server ignored range request on %s", targetPath));
+            }
+            throw new IOException(String.format("Failed to download range of %s. Status %d", targetPath, status));
+        } catch (IOException | RuntimeException e) {
+            if (response != null) {
+                closeQuietly(response);
+            }
+            lease.close();
+            throw e;
+        } finally {
+            timer.close();
+        }
+    }
+
+    /**
+     * Get the type, size, last modified time, checksums and properties of a path with a single request.
+     * Answers are shortly cached and shared by the whole JVM
+     * @param targetPath the path to check
+     * @return the item info, or null if the path doesn't exist
+     * @throws IOException if the path cannot be checked
+     */
+    public ArtifactoryItemInfo info(String targetPath) throws IOException {
+        return metadataCache.get(ArtifactoryMetadataCache.key(config, targetPath), () -> fetchInfo(targetPath));
+    }
+
+    /**
+     * Drop the cached metadata of a path and of everything below it
+     * @param targetPath the path
+     */
+    public void invalidate(String targetPath) {
+        metadataCache.invalidate(ArtifactoryMetadataCache.key(config, targetPath));
+    }
+
+    private ArtifactoryItemInfo fetchInfo(String targetPath) throws IOException {
+        int slash = targetPath.lastIndexOf('/');
+        JSONObject criteria = new JSONObject();
+        criteria.put("repo", this.config.repository);
+        criteria.put("path", slash >= 0 ? targetPath.substring(0, slash) : ".");
+        criteria.put("name", targetPath.substring(slash + 1));
+        criteria.put("type", "any");
+        // Searched rather than read from the storage API, which cannot return the properties with the item
+        String query = String.format(
+                "items.find(%s).include(\"path\",\"name\",\"type\",\"size\",\"modified\",\"updated\","
+                        + "\"actual_sha1\",\"sha256\",\"property.*\")",
+                criteria);
+        ArtifactoryRequest request = new ArtifactoryRequestImpl()
+                .method(ArtifactoryRequest.Method.POST)
+                .apiUrl("api/search/aql")
+                .requestType(ArtifactoryRequest.ContentType.TEXT)
+                .requestBody(query)
+                .responseType(ArtifactoryRequest.ContentType.JSON);
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_INFO)) {
+            ArtifactoryResponse response;
+            try (ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+                response = lease.artifactory().restCall(request);
+            }
+            if (!response.isSuccessResponse()) {
+                throw new IOException(String.format(
+                        "Failed to get info of %s. Status %d",
+                        targetPath, response.getStatusLine().getStatusCode()));
+            }
+            JSONArray results = JSONObject.fromObject(response.getRawBody()).optJSONArray("results");
+            ArtifactoryItemInfo info = null;
+            if (results != null) {
+                for (int i = 0; i < results.size() && info == null; i++) {
+                    ArtifactoryItemInfo item = ArtifactoryItemInfo.fromAqlJson(results.getJSONObject(i), true);
+                    if (item.getPath().equals(targetPath)) {
+                        info = item;
+                    }
+                }
+            }
+            timer.succeeded();
+            return info;
+        }
     }
 
     /**
@@ -102,29 +416,260 @@ public class ArtifactoryClient implements AutoCloseable {
      */
     public boolean isFolder(String targetPath) throws IOException {
         try {
-            return artifactory.repository(this.config.repository).isFolder(urlEncodeParts(targetPath));
+            ArtifactoryItemInfo info = info(targetPath);
+            return info != null && info.isFolder();
         } catch (Exception e) {
-            LOGGER.debug(String.format("Failed to check if %s is a folder", targetPath));
+            LOGGER.debug("Failed to check if {} is a folder", targetPath);
             return false;
         }
     }
 
     /**
-     * List the files in a folder
+     * List the files in a folder and its sub folders
      * @param targetPath the path to list
      * @return the list of files in the folder
      * @throws IOException if the files cannot be listed
      */
     public List<String> list(String targetPath) throws IOException {
-        if (!isFolder(targetPath)) {
-            LOGGER.debug(String.format("Target path %s is not a folder. Cannot list files", targetPath));
-            return List.of();
+        try (Stream<ArtifactoryItemInfo> files =
+                listFiles(targetPath, LIST_PAGE_SIZE, EnumSet.noneOf(ListField.class))) {
+            return files.map(ArtifactoryItemInfo::getPath).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Lazily list the files in a folder and its sub folders, sorted by path.
+     * Pages are fetched with AQL as the stream is consumed, so a caller stopping early doesn't fetch the rest.
+     * A page that cannot be fetched fails the stream with an {@link UncheckedIOException}
+     * @param targetPath the path to list
+     * @param pageSize the number of files fetched per request
+     * @param fields the fields to fetch in addition to the path
+     * @return the files
+     */
+    public Stream<ArtifactoryItemInfo> listFiles(String targetPath, int pageSize, Set<ListField> fields) {
+        ListingIterator iterator = new ListingIterator(targetPath, Math.max(1, pageSize), fields);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Fetch a page of the files in a folder and its sub folders
+     * @param targetPath the path to list
+     * @param offset the index of the first file
+     * @param pageSize the maximum number of files
+     * @param fields the fields to fetch in addition to the path
+     * @return the files
+     * @throws IOException if the page cannot be fetched
+     */
+    List<ArtifactoryItemInfo> listPage(String targetPath, long offset, int pageSize, Set<ListField> fields)
+            throws IOException {
+        JSONObject criteria = new JSONObject();
+        criteria.put("repo", this.config.repository);
+        criteria.put("type", "file");
+        JSONObject below = new JSONObject();
+        below.put("$match", targetPath + "/*");
+        JSONObject inFolder = new JSONObject();
+        inFolder.put("path", targetPath);
+        JSONObject inSubFolder = new JSONObject();
+        inSubFolder.put("path", below);
+        JSONArray or = new JSONArray();
+        or.add(inFolder);
+        or.add(inSubFolder);
+        criteria.put("$or", or);
+        JSONArray include = new JSONArray();
+        include.add("path");
+        include.add("name");
+        for (ListField field : fields) {
+            if (field.aqlField != null) {
+                include.add(field.aqlField);
+            }
+        }
+        String query = String.format(
+                "items.find(%s).include(%s).sort({\"$asc\":[\"path\",\"name\"]}).offset(%d).limit(%d)",
+                criteria, include.join(","), offset, pageSize);
+        ArtifactoryRequest request = new ArtifactoryRequestImpl()
+                .method(ArtifactoryRequest.Method.POST)
+                .apiUrl("api/search/aql")
+                .requestType(ArtifactoryRequest.ContentType.TEXT)
+                .requestBody(query)
+                .responseType(ArtifactoryRequest.ContentType.JSON);
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_LIST)) {
+            ArtifactoryResponse response;
+            try (ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+                response = lease.artifactory().restCall(request);
+            }
+            if (!response.isSuccessResponse()) {
+                throw new IOException(String.format(
+                        "Failed to list %s. Status %d",
+                        targetPath, response.getStatusLine().getStatusCode()));
+            }
+            JSONArray results = JSONObject.fromObject(response.getRawBody()).optJSONArray("results");
+            List<ArtifactoryItemInfo> files = new ArrayList<>();
+            if (results != null) {
+                for (int i = 0; i < results.size(); i++) {
+                    files.add(ArtifactoryItemInfo.fromAqlJson(
+                            results.getJSONObject(i), fields.contains(ListField.PROPERTIES)));
+                }
+            }
+            timer.succeeded();
+            LOGGER.trace("Listed {} files of {} from {}", files.size(), targetPath, offset);
+            return files;
+        }
+    }
+
+    /**
+     * Find which of the given file names exist below a folder, with a single search
+     * @param targetPath the folder to search, sub folders included
+     * @param names the file names to look for
+     * @return the last update time of each name found
+     * @throws IOException if the search fails
+     */
+    public Map<String, Long> findExisting(String targetPath, Collection<String> names) throws IOException {
+        if (names.isEmpty()) {
+            return Map.of();
+        }
+        JSONObject criteria = new JSONObject();
+        criteria.put("repo", this.config.repository);
+        criteria.put("type", "file");
+        JSONObject below = new JSONObject();
+        below.put("$match", targetPath + "/*");
+        criteria.put("path", below);
+        JSONArray or = new JSONArray();
+        for (String name : names) {
+            JSONObject named = new JSONObject();
+            named.put("name", name);
+            or.add(named);
+        }
+        criteria.put("$or", or);
+        String query = String.format("items.find(%s).include(\"name\",\"modified\",\"updated\")", criteria);
+        ArtifactoryRequest request = new ArtifactoryRequestImpl()
+                .method(ArtifactoryRequest.Method.POST)
+                .apiUrl("api/search/aql")
+                .requestType(ArtifactoryRequest.ContentType.TEXT)
+                .requestBody(query)
+                .responseType(ArtifactoryRequest.ContentType.JSON);
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_LIST)) {
+            ArtifactoryResponse response;
+            try (ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+                response = lease.artifactory().restCall(request);
+            }
+            if (!response.isSuccessResponse()) {
+                throw new IOException(String.format(
+                        "Failed to search %s. Status %d",
+                        targetPath, response.getStatusLine().getStatusCode()));
+            }
+            JSONArray results = JSONObject.fromObject(response.getRawBody()).optJSONArray("results");
+            Map<String, Long> found = new HashMap<>();
+            if (results != null) {
+                for (int i = 0; i < results.size(); i++) {
+                    JSONObject item = results.getJSONObject(i);
+                    long updated = ArtifactoryItemInfo.fromAqlJson(item).getLastModified();
+                    found.merge(item.optString("name"), updated, Math::max);
+                }
+            }
+            timer.succeeded();
+            return found;
+        }
+    }
+
+    /**
+     * Find a file in every sub folder of a folder, with a single search
+     * @param parentPath the folder whose sub folders are searched
+     * @param relativePath the path of the file relative to each sub folder
+     * @param limit the maximum number of files
+     * @return the files, most recently modified first
+     * @throws IOException if the search fails
+     */
+    public List<ArtifactoryItemInfo> findInSubFolders(String parentPath, String relativePath, int limit)
+            throws IOException {
+        int slash = relativePath.lastIndexOf('/');
+        JSONObject path = new JSONObject();
+        path.put("$match", parentPath + "/*" + (slash >= 0 ? "/" + relativePath.substring(0, slash) : ""));
+        JSONObject criteria = new JSONObject();
+        criteria.put("repo", this.config.repository);
+        criteria.put("type", "file");
+        criteria.put("path", path);
+        criteria.put("name", relativePath.substring(slash + 1));
+        String query = String.format(
+                "items.find(%s).include(\"path\",\"name\",\"size\",\"modified\",\"property.*\")"
+                        + ".sort({\"$desc\":[\"modified\"]}).limit(%d)",
+                criteria, limit);
+        ArtifactoryRequest request = new ArtifactoryRequestImpl()
+                .method(ArtifactoryRequest.Method.POST)
+                .apiUrl("api/search/aql")
+                .requestType(ArtifactoryRequest.ContentType.TEXT)
+                .requestBody(query)
+                .responseType(ArtifactoryRequest.ContentType.JSON);
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_LIST)) {
+            ArtifactoryResponse response;
+            try (ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+                response = lease.artifactory().restCall(request);
+            }
+            if (!response.isSuccessResponse()) {
+                throw new IOException(String.format(
+                        "Failed to search %s. Status %d",
+                        parentPath, response.getStatusLine().getStatusCode()));
+            }
+            JSONArray results = JSONObject.fromObject(response.getRawBody()).optJSONArray("results");
+            List<ArtifactoryItemInfo> files = new ArrayList<>();
+            if (results != null) {
+                for (int i = 0; i < results.size(); i++) {
+                    ArtifactoryItemInfo file = ArtifactoryItemInfo.fromAqlJson(results.getJSONObject(i), true);
+                    // The wildcard also matches nested folders
+                    String relative = file.getPath().substring(parentPath.length() + 1);
+                    if (relative.indexOf('/') == relative.length() - relativePath.length() - 1) {
+                        files.add(file);
+                    }
+                }
+            }
+            timer.succeeded();
+            return files;
+        }
+    }
+
+    /**
+     * Find the most recently modified file of a folder whose name matches a pattern, with a single search
+     * @param targetPath the folder to search, sub folders excluded
+     * @param namePattern the name pattern, where {@code *} matches any characters
+     * @return the file, or null if none matches
+     * @throws IOException if the search fails
+     */
+    public ArtifactoryItemInfo findLatest(String targetPath, String namePattern) throws IOException {
+        JSONObject name = new JSONObject();
+        name.put("$match", namePattern);
+        JSONObject criteria = new JSONObject();
+        criteria.put("repo", this.config.repository);
+        criteria.put("type", "file");
+        criteria.put("path", targetPath);
+        criteria.put("name", name);
+        String query = String.format(
+                "items.find(%s).include(\"path\",\"name\",\"size\",\"modified\",\"property.*\")"
+                        + ".sort({\"$desc\":[\"modified\"]}).limit(1)",
+                criteria);
+        ArtifactoryRequest request = new ArtifactoryRequestImpl()
+                .method(ArtifactoryRequest.Method.POST)
+                .apiUrl("api/search/aql")
+                .requestType(ArtifactoryRequest.ContentType.TEXT)
+                .requestBody(query)
+                .responseType(ArtifactoryRequest.ContentType.JSON);
+        try (ArtifactoryMetrics.Timer timer = metrics.start(null, ArtifactoryMetrics.CLIENT_LIST)) {
+            ArtifactoryResponse response;
+            try (ArtifactoryClientPool.Lease lease = pool.lease(config)) {
+                response = lease.artifactory().restCall(request);
+            }
+            if (!response.isSuccessResponse()) {
+                throw new IOException(String.format(
+                        "Failed to search %s. Status %d",
+                        targetPath, response.getStatusLine().getStatusCode()));
+            }
+            JSONArray results = JSONObject.fromObject(response.getRawBody()).optJSONArray("results");
+            timer.succeeded();
+            return results != null && !results.isEmpty()
+                    ? ArtifactoryItemInfo.fromAqlJson(results.getJSONObject(0), true)
+                    : null;
         }
-        FileSpec fileSpec = FileSpec.fromString(
-                String.format("{\"files\": [{\"pattern\": \"%s/%s*\"}]}", this.config.repository, targetPath));
-        return artifactory.searches().artifactsByFileSpec(fileSpec).stream()
-                .map((item -> String.format("%s/%s", item.getPath(), item.getName())))
-                .collect(Collectors.toList());
     }
 
     /**
@@ -134,17 +679,11 @@ public class ArtifactoryClient implements AutoCloseable {
      * @throws IOException if the path cannot be checked
      */
     public boolean isFile(String targetPath) throws IOException {
-        if (isFolder(targetPath)) {
-            return false;
-        }
         try {
-            File file = artifactory
-                    .repository(this.config.repository)
-                    .file(urlEncodeParts(targetPath))
-                    .info();
-            return !file.isFolder();
+            ArtifactoryItemInfo info = info(targetPath);
+            return info != null && info.isFile();
         } catch (Exception e) {
-            LOGGER.debug(String.format("Failed to check if %s is a file", targetPath));
+            LOGGER.debug("Failed to check if {} is a file", targetPath);
             return false;
         }
     }
@@ -156,13 +695,8 @@ public class ArtifactoryClient implements AutoCloseable {
      * @throws IOException if the last updated time cannot be checked
      */
     public long lastUpdated(String targetPath) throws IOException {
-        LOGGER.trace(String.format("Getting last updated time for %s", targetPath));
-        return artifactory
-                .repository(this.config.repository)
-                .file(targetPath)
-                .info()
-                .getLastModified()
-                .getTime();
+        LOGGER.trace("Getting last updated time for {}", targetPath);
+        return existingInfo(targetPath).getLastModified();
     }
 
     /**
@@ -172,15 +706,16 @@ public class ArtifactoryClient implements AutoCloseable {
      * @throws IOException if the size cannot be checked
      */
     public long size(String targetPath) throws IOException {
-        if (isFolder(targetPath)) {
-            return 0;
+        LOGGER.trace("Getting size for {}", targetPath);
+        return existingInfo(targetPath).getSize();
+    }
+
+    private ArtifactoryItemInfo existingInfo(String targetPath) throws IOException {
+        ArtifactoryItemInfo info = info(targetPath);
+        if (info == null) {
+            throw new FileNotFoundException(String.format("%s not found", targetPath));
         }
-        LOGGER.trace(String.format("Getting size for %s", targetPath));
-        File file = artifactory
-                .repository(this.config.repository)
-                .file(urlEncodeParts(targetPath))
-                .info();
-        return file.getSize();
+        return info;
     }
 
     /**
@@ -188,22 +723,8 @@ public class ArtifactoryClient implements AutoCloseable {
      * @return the ArtifactoryConfig object
      */
     public ArtifactoryConfig buildArtifactoryConfig() {
-        return new ArtifactoryConfig(this.config.serverUrl, this.config.repository, this.config.credentials);
-    }
-
-    /**
-     * Build the Artifactory client
-     * @return the Artifactory client
-     */
-    private Artifactory buildArtifactory() {
-        return ArtifactoryClientBuilder.create()
-                .setUrl(config.serverUrl)
-                .setUsername(config.credentials.getUsername())
-                .setPassword(config.credentials.getPassword().getPlainText())
-                .addInterceptorLast((request, httpContext) -> {
-                    LOGGER.debug(String.format("Sending Artifactory request to %s", request.getRequestLine()));
-                })
-                .build();
+        return new ArtifactoryConfig(
+                this.config.serverUrl, this.config.repository, this.config.username, this.config.secret);
     }
 
     private String urlEncodeParts(String s) {
@@ -212,21 +733,158 @@ public class ArtifactoryClient implements AutoCloseable {
                 .replace("+", "%20");
     }
 
+    /**
+     * Release this client. The underlying connection pool is shared by the JVM and stays open
+     */
     @Override
-    public void close() throws Exception {
-        artifactory.close();
+    public void close() throws Exception {}
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOGGER.trace("Failed to close Artifactory response", e);
+        }
     }
 
-    public static final class ArtifactoryConfig implements Serializable {
+    /**
+     * Optional fields of a listing. The path of the files is always fetched
+     */
+    public enum ListField {
+        PATH(null),
+        NAME(null),
+        SIZE("size"),
+        MODIFIED("modified"),
+        UPDATED("updated"),
+        SHA1("actual_sha1"),
+        DOWNLOADED("stat.downloaded"),
+        PROPERTIES("property.*");
+
+        private final String aqlField;
+
+        ListField(String aqlField) {
+            this.aqlField = aqlField;
+        }
+    }
+
+    /**
+     * Fetch the pages of a listing as they are consumed
+     */
+    private final class ListingIterator implements Iterator<ArtifactoryItemInfo> {
+        private final String targetPath;
+        private final int pageSize;
+        private final Set<ListField> fields;
+        private Iterator<ArtifactoryItemInfo> page = Collections.emptyIterator();
+        private long offset;
+        private boolean last;
+
+        private ListingIterator(String targetPath, int pageSize, Set<ListField> fields) {
+            this.targetPath = targetPath;
+            this.pageSize = pageSize;
+            this.fields = fields;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!page.hasNext() && !last) {
+                List<ArtifactoryItemInfo> files;
+                try {
+                    files = listPage(targetPath, offset, pageSize, fields);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                offset += files.size();
+                last = files.size() < pageSize;
+                page = files.iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public ArtifactoryItemInfo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+    }
+
+    /**
+     * Progress listener of an upload. Called for every chunk written, so it only updates counters
+     */
+    private static final class UploadProgress implements UploadListener {
+        private final ArtifactoryMetrics metrics = ArtifactoryMetrics.get();
+        private long reported;
+
+        @Override
+        public void uploadProgress(long bytesRead, long totalBytes) {
+            metrics.recordUploadProgress(bytesRead - reported);
+            reported = bytesRead;
+        }
+    }
+
+    /**
+     * Thrown when the server answers a range request with the whole content
+     */
+    public static final class RangeNotSupportedException extends IOException {
         private static final long serialVersionUID = 1L;
+
+        public RangeNotSupportedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Input stream that releases its client lease, and its response if any, once closed
+     */
+    private static final class LeasedInputStream extends FilterInputStream {
+        private final ArtifactoryClientPool.Lease lease;
+        private final AutoCloseable response;
+
+        private LeasedInputStream(InputStream in, ArtifactoryClientPool.Lease lease, AutoCloseable response) {
+            super(in);
+            this.lease = lease;
+            this.response = response;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (response != null) {
+                    closeQuietly(response);
+                }
+                lease.close();
+            }
+        }
+    }
+
+    /**
+     * Configuration of a client, sent to the agents with each callable. Only the username and the secret of the
+     * credentials are kept, so the credentials object never leaves the controller. An empty username sends the secret
+     * as an access token
+     */
+    public static final class ArtifactoryConfig implements Serializable {
+        private static final long serialVersionUID = 2L;
         private final String serverUrl;
         private final String repository;
-        private final UsernamePasswordCredentials credentials;
+        private final String username;
+        private final Secret secret;
 
         public ArtifactoryConfig(String serverUrl, String repository, UsernamePasswordCredentials credentials) {
+            this(
+                    serverUrl,
+                    repository,
+                    credentials != null ? credentials.getUsername() : null,
+                    credentials != null ? credentials.getPassword() : null);
+        }
+
+        public ArtifactoryConfig(String serverUrl, String repository, String username, Secret secret) {
             this.serverUrl = serverUrl;
             this.repository = repository;
-            this.credentials = credentials;
+            this.username = username;
+            this.secret = secret;
         }
 
         public String getServerUrl() {
@@ -237,8 +895,19 @@ public class ArtifactoryClient implements AutoCloseable {
             return repository;
         }
 
-        public UsernamePasswordCredentials getCredentials() {
-            return credentials;
+        public String getUsername() {
+            return username;
+        }
+
+        public Secret getSecret() {
+            return secret;
+        }
+
+        /**
+         * @return true if the secret is an access token, sent without username
+         */
+        public boolean isAccessToken() {
+            return username == null || username.isEmpty();
         }
     }
 }
@@ -0,0 +1,235 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.Secret;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.util.SystemProperties;
+import org.jfrog.artifactory.client.Artifactory;
+import org.jfrog.artifactory.client.ArtifactoryClientBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM wide pool of Artifactory clients. One client (and so one HTTP connection pool) is kept per server and user,
+ * so the controller and each agent reuse their connections instead of paying a TLS handshake per cache operation.
+ * Clients are rebuilt when the credentials change and closed once idle.
+ */
+public final class ArtifactoryClientPool {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryClientPool.class);
+
+    /**
+     * Maximum number of clients kept open by this JVM
+     */
+    static final int MAX_SIZE = SystemProperties.getInteger(ArtifactoryClientPool.class.getName() + ".maxSize", 8);
+
+    /**
+     * Time after which an unused client is closed
+     */
+    static final long IDLE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(
+            SystemProperties.getLong(ArtifactoryClientPool.class.getName() + ".idleTimeoutSeconds", 600L));
+
+    private static final ArtifactoryClientPool INSTANCE = new ArtifactoryClientPool(MAX_SIZE, IDLE_TIMEOUT_MS);
+
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    ArtifactoryClientPool(int maxSize, long idleTimeoutMs) {
+        this.maxSize = Math.max(1, maxSize);
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public static ArtifactoryClientPool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lease the shared client for the given configuration. The lease must be closed once the request is done
+     * @param config the Artifactory configuration
+     * @return the lease
+     */
+    public Lease lease(@NonNull ArtifactoryClient.ArtifactoryConfig config) {
+        String key = config.getServerUrl() + '\n' + config.getUsername();
+        String fingerprint = fingerprint(config.getSecret());
+        Entry retired = null;
+        Entry entry;
+        synchronized (entries) {
+            long now = System.currentTimeMillis();
+            entry = entries.get(key);
+            if (entry != null && !entry.fingerprint.equals(fingerprint)) {
+                LOGGER.debug("Credentials changed for {}. Rebuilding Artifactory client", config.getServerUrl());
+                entries.remove(key);
+                entry.retired = true;
+                retired = entry;
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                entry = new Entry(buildArtifactory(config), fingerprint);
+                entries.put(key, entry);
+            } else {
+                hits.incrementAndGet();
+            }
+            entry.inFlight.incrementAndGet();
+            entry.lastUsed = now;
+            evict(now);
+        }
+        if (retired != null) {
+            retired.closeIfUnused();
+        }
+        return new Lease(entry);
+    }
+
+    /**
+     * Close idle clients and the least recently used ones above the maximum size
+     * @param now the current time
+     */
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.inFlight.get() == 0 && now - entry.lastUsed > idleTimeoutMs) {
+                it.remove();
+                retire(entry);
+            }
+        }
+        while (entries.size() > maxSize) {
+            Map.Entry<String, Entry> eldest = entries.entrySet().stream()
+                    .filter(e -> e.getValue().inFlight.get() == 0)
+                    .min(Comparator.comparingLong(e -> e.getValue().lastUsed))
+                    .orElse(null);
+            if (eldest == null) {
+                return;
+            }
+            entries.remove(eldest.getKey());
+            retire(eldest.getValue());
+        }
+    }
+
+    private void retire(Entry entry) {
+        evictions.incrementAndGet();
+        entry.retired = true;
+        entry.closeIfUnused();
+    }
+
+    /**
+     * Close all clients of the pool
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.values().forEach(this::retire);
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Build the Artifactory client
+     * @return the Artifactory client
+     */
+    private static Artifactory buildArtifactory(ArtifactoryClient.ArtifactoryConfig config) {
+        ArtifactoryClientBuilder builder = ArtifactoryClientBuilder.create().setUrl(config.getServerUrl());
+        if (config.isAccessToken()) {
+            builder.setAccessToken(Secret.toString(config.getSecret()));
+        } else {
+            builder.setUsername(config.getUsername()).setPassword(Secret.toString(config.getSecret()));
+        }
+        return builder
+                .addInterceptorLast((request, httpContext) -> {
+                    ArtifactoryMetrics.get().recordRequest();
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Sending Artifactory request to {}", request.getRequestLine());
+                    }
+                })
+                .build();
+    }
+
+    private static String fingerprint(Secret secret) {
+        MessageDigest digest = ArtifactoryChecksums.digest("SHA-256");
+        return ArtifactoryChecksums.toHex(digest.digest(Secret.toString(secret).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static final class Entry {
+        private final Artifactory artifactory;
+        private final String fingerprint;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long lastUsed;
+        private volatile boolean retired;
+        private boolean closed;
+
+        private Entry(Artifactory artifactory, String fingerprint) {
+            this.artifactory = artifactory;
+            this.fingerprint = fingerprint;
+        }
+
+        private synchronized void closeIfUnused() {
+            if (closed || !retired || inFlight.get() > 0) {
+                return;
+            }
+            closed = true;
+            try {
+                artifactory.close();
+            } catch (Exception e) {
+                LOGGER.debug("Failed to close Artifactory client", e);
+            }
+        }
+    }
+
+    /**
+     * A lease on a shared client. Closing the lease doesn't close the client, unless it was retired meanwhile
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean released;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public Artifactory artifactory() {
+            return entry.artifactory;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            entry.lastUsed = System.currentTimeMillis();
+            if (entry.inFlight.decrementAndGet() == 0 && entry.retired) {
+                entry.closeIfUnused();
+            }
+        }
+    }
+}
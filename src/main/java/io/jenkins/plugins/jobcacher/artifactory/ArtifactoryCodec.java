@@ -0,0 +1,160 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorOutputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+
+/**
+ * Compression applied by the agents to the archives they transfer. The codec and its level are stored as properties
+ * of the artifact, so a restore decompresses with the codec used by the save. Artifacts without the property were
+ * stored uncompressed.
+ */
+public enum ArtifactoryCodec {
+    NONE("none") {
+        @Override
+        OutputStream compress(OutputStream out, int level) {
+            return out;
+        }
+
+        @Override
+        InputStream decompress(InputStream in) {
+            return in;
+        }
+    },
+    GZIP("gzip") {
+        @Override
+        OutputStream compress(OutputStream out, int level) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(level > 0 ? Math.min(level, 9) : Deflater.DEFAULT_COMPRESSION);
+                }
+            };
+        }
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    },
+    LZ4("lz4") {
+        @Override
+        OutputStream compress(OutputStream out, int level) throws IOException {
+            // LZ4 has no compression levels. High levels trade speed for a better ratio
+            BlockLZ4CompressorOutputStream.Builder builder = BlockLZ4CompressorOutputStream.createParameterBuilder();
+            return new FramedLZ4CompressorOutputStream(
+                    out,
+                    new FramedLZ4CompressorOutputStream.Parameters(
+                            FramedLZ4CompressorOutputStream.BlockSize.M4,
+                            level >= 6 ? builder.tunedForCompressionRatio().build() : builder.tunedForSpeed().build()));
+        }
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new FramedLZ4CompressorInputStream(in);
+        }
+    };
+
+    /**
+     * Property holding the codec of an artifact
+     */
+    static final String CODEC_PROPERTY = "jobcacher.codec";
+
+    /**
+     * Property holding the compression level of an artifact
+     */
+    static final String LEVEL_PROPERTY = "jobcacher.codec.level";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String id;
+
+    ArtifactoryCodec(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    abstract OutputStream compress(OutputStream out, int level) throws IOException;
+
+    abstract InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * Compress a file into another one
+     * @param source the file to compress
+     * @param target the compressed file
+     * @param level the compression level, 0 for the codec default
+     * @throws IOException if the file cannot be compressed
+     */
+    void compress(File source, File target, int level) throws IOException {
+        try (InputStream in = Files.newInputStream(source.toPath());
+                OutputStream out = compress(Files.newOutputStream(target.toPath()), level)) {
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * Decompress a file into another one
+     * @param source the compressed file
+     * @param target the decompressed file
+     * @throws IOException if the file cannot be decompressed
+     */
+    void decompress(File source, File target) throws IOException {
+        try (InputStream in = decompress(Files.newInputStream(source.toPath()));
+                OutputStream out = Files.newOutputStream(target.toPath())) {
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * @param level the compression level
+     * @return the properties to store with an artifact compressed with this codec
+     */
+    Map<String, String> toProperties(int level) {
+        return Map.of(CODEC_PROPERTY, id, LEVEL_PROPERTY, String.valueOf(level));
+    }
+
+    /**
+     * @param properties the properties of an artifact
+     * @return the codec of the artifact, none when the property is missing
+     * @throws IOException if the codec is unknown, for example stored by a newer version
+     */
+    static ArtifactoryCodec fromProperties(Map<String, String> properties) throws IOException {
+        String id = properties.get(CODEC_PROPERTY);
+        if (id == null || id.isEmpty()) {
+            return NONE;
+        }
+        for (ArtifactoryCodec codec : values()) {
+            if (codec.id.equals(id)) {
+                return codec;
+            }
+        }
+        throw new IOException(String.format("Unknown codec %s", id));
+    }
+
+    /**
+     * @param id the codec identifier
+     * @return the codec, none if the identifier is blank or unknown
+     */
+    public static ArtifactoryCodec of(String id) {
+        if (id != null) {
+            for (ArtifactoryCodec codec : values()) {
+                if (codec.id.equals(id.trim().toLowerCase(Locale.ROOT))) {
+                    return codec;
+                }
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,120 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletion of folder trees. A single delete request of a large tree is slow on the server side and can time out,
+ * so the files are deleted concurrently under a request rate limit, each file being retried on its own. The then
+ * empty folders are removed with a last request on the root folder.
+ */
+final class ArtifactoryDeleter {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryDeleter.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 1000L;
+
+    private final ArtifactoryClient client;
+    private final int parallelism;
+    private final int requestsPerSecond;
+
+    ArtifactoryDeleter(ArtifactoryClient client, ArtifactoryTransferSettings settings) {
+        this(client, settings.getDeleteParallelism(), settings.getDeleteRequestsPerSecond());
+    }
+
+    ArtifactoryDeleter(ArtifactoryClient client, int parallelism, int requestsPerSecond) {
+        this.client = client;
+        this.parallelism = parallelism;
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * Delete a file, or a folder and everything below it
+     * @param path the path to delete
+     * @throws IOException if some files cannot be deleted
+     * @throws InterruptedException if interrupted while deleting
+     */
+    void delete(String path) throws IOException, InterruptedException {
+        if (parallelism <= 1) {
+            client.deleteArtifact(path);
+            return;
+        }
+        ArtifactoryItemInfo info = client.info(path);
+        if (info == null) {
+            return;
+        }
+        if (info.isFolder()) {
+            deleteFiles(path);
+        }
+        client.deleteArtifact(path);
+    }
+
+    private void deleteFiles(String path) throws IOException, InterruptedException {
+        // Listed in full first, as the listing is paged by offset and deleting files would shift the next pages
+        List<String> paths;
+        try (Stream<ArtifactoryItemInfo> files = client.listFiles(
+                path, ArtifactoryClient.LIST_PAGE_SIZE, EnumSet.noneOf(ArtifactoryClient.ListField.class))) {
+            paths = files.map(ArtifactoryItemInfo::getPath).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        ArtifactoryRateLimiter limiter = new ArtifactoryRateLimiter(requestsPerSecond);
+        AtomicInteger deleted = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                parallelism, new NamingThreadFactory(new DaemonThreadFactory(), "ArtifactoryDeleter"));
+        try {
+            for (String file : paths) {
+                executor.execute(() -> {
+                    try {
+                        deleteWithRetry(file, limiter);
+                        deleted.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failed.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Failed to delete {}", file, e);
+                        failed.incrementAndGet();
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.debug("Deleted {} files below {}", deleted.get(), path);
+        if (failed.get() > 0) {
+            throw new IOException(String.format("Failed to delete %d files below %s", failed.get(), path));
+        }
+    }
+
+    private void deleteWithRetry(String file, ArtifactoryRateLimiter limiter) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            limiter.acquire();
+            try {
+                client.deleteArtifact(file);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.debug("Failed to delete {} (attempt {}/{}): {}", file, attempt, MAX_ATTEMPTS, e.getMessage());
+                TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MS * attempt);
+            }
+        }
+    }
+}
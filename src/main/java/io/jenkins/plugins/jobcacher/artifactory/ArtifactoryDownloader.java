@@ -0,0 +1,244 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Agent side download of artifacts. Large artifacts are fetched as concurrent byte ranges written at their offset
+ * into a preallocated file, with a single stream fallback when the server doesn't honor ranges.
+ * Artifacts uploaded in parts are fetched the same way from the segments listed by their manifest.
+ * Compressed artifacts are decompressed with the codec stored in their properties.
+ */
+final class ArtifactoryDownloader {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryDownloader.class);
+
+    private final ArtifactoryClient client;
+    private final ArtifactoryTransferSettings settings;
+
+    ArtifactoryDownloader(ArtifactoryClient client, ArtifactoryTransferSettings settings) {
+        this.client = client;
+        this.settings = settings;
+    }
+
+    /**
+     * Download an artifact into a file. Artifacts uploaded in parts are put back together.
+     * When the agent local store is enabled, archives with the same checksum as the remote one are taken from it
+     * @param path the path of the artifact
+     * @param target the file to write
+     * @param info the metadata of the artifact if already known, to avoid fetching it again
+     * @throws IOException if the artifact cannot be downloaded
+     * @throws InterruptedException if interrupted while waiting for ranges
+     */
+    void download(String path, File target, ArtifactoryItemInfo info) throws IOException, InterruptedException {
+        if (settings.getLocalCacheDirectory() == null) {
+            downloadAndDecompress(path, target, info);
+            return;
+        }
+        ArtifactoryItemInfo remote = info != null ? info : client.info(path);
+        String sha256 = remote != null && remote.getChecksums() != null
+                ? remote.getChecksums().getSha256()
+                : null;
+        ArtifactoryLocalCache localCache = new ArtifactoryLocalCache(
+                Paths.get(settings.getLocalCacheDirectory()), settings.getLocalCacheMaxSizeBytes());
+        if (localCache.restore(sha256, target.toPath())) {
+            return;
+        }
+        // Never write through a link into the local store
+        Files.deleteIfExists(target.toPath());
+        downloadAndDecompress(path, target, remote);
+        localCache.store(sha256, target.toPath());
+    }
+
+    private void downloadAndDecompress(String path, File target, ArtifactoryItemInfo info)
+            throws IOException, InterruptedException {
+        // The codec comes with the info, only looked up again if the caller got it without the properties
+        ArtifactoryItemInfo remote = info != null && info.hasProperties() ? info : client.info(path);
+        ArtifactoryCodec codec = ArtifactoryCodec.fromProperties(remote != null ? remote.getProperties() : Map.of());
+        if (codec == ArtifactoryCodec.NONE) {
+            downloadRemote(path, target, remote);
+            return;
+        }
+        File compressed = new File(target.getAbsoluteFile().getParentFile(), target.getName() + "." + codec.getId());
+        try {
+            downloadRemote(path, compressed, remote);
+            codec.decompress(compressed, target);
+            LOGGER.debug(
+                    "Decompressed {} with {} from {} to {} bytes",
+                    path,
+                    codec.getId(),
+                    compressed.length(),
+                    target.length());
+        } finally {
+            Files.deleteIfExists(compressed.toPath());
+        }
+    }
+
+    private void downloadRemote(String path, File target, ArtifactoryItemInfo info)
+            throws IOException, InterruptedException {
+        long chunkSize = settings.getDownloadChunkSizeBytes();
+        int parallelism = settings.getDownloadParallelism();
+        boolean downloaded = false;
+        if (parallelism > 1) {
+            long size = info != null ? info.getSize() : client.size(path);
+            if (size > chunkSize) {
+                try {
+                    downloadRanges(path, target, size, chunkSize, parallelism);
+                    downloaded = true;
+                } catch (ArtifactoryClient.RangeNotSupportedException e) {
+                    LOGGER.debug("{}. Falling back to single stream download", e.getMessage());
+                }
+            }
+        }
+        if (!downloaded) {
+            downloadStream(path, target);
+        }
+        if (ArtifactoryManifest.isManifest(target)) {
+            downloadSegments(path, ArtifactoryManifest.read(target), target);
+        }
+    }
+
+    private void downloadStream(String path, File target) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                target.toPath(),
+                StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeAt(client.downloadArtifact(path), channel, 0, allocateBuffer());
+        }
+    }
+
+    private void downloadRanges(String path, File target, long size, long chunkSize, int parallelism)
+            throws IOException, InterruptedException {
+        int chunks = (int) ((size + chunkSize - 1) / chunkSize);
+        LOGGER.trace("Downloading {} in {} ranges of {} bytes", path, chunks, chunkSize);
+        // Probe the first range on this thread, so a server ignoring ranges is detected before fanning out
+        InputStream first = client.downloadRange(path, 0, Math.min(chunkSize, size) - 1);
+        List<Segment> segments = new ArrayList<>();
+        segments.add(new Segment(0, () -> first));
+        for (int i = 1; i < chunks; i++) {
+            long start = i * chunkSize;
+            long end = Math.min(start + chunkSize, size) - 1;
+            segments.add(new Segment(start, () -> client.downloadRange(path, start, end)));
+        }
+        fetch(path, target, size, segments, parallelism);
+    }
+
+    private void downloadSegments(String path, ArtifactoryManifest manifest, File target)
+            throws IOException, InterruptedException {
+        LOGGER.trace("Downloading {} from {} segments", path, manifest.getSegments().size());
+        List<Segment> segments = new ArrayList<>();
+        for (ArtifactoryManifest.Segment segment : manifest.getSegments()) {
+            String segmentPath = segment.resolve(path);
+            segments.add(new Segment(segment.getOffset(), () -> client.downloadArtifact(segmentPath)));
+        }
+        fetch(path, target, manifest.getSize(), segments, settings.getUploadParallelism());
+    }
+
+    /**
+     * Fetch segments concurrently into a preallocated file
+     */
+    private void fetch(String path, File target, long size, List<Segment> segments, int parallelism)
+            throws IOException, InterruptedException {
+        try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+            file.setLength(size);
+            FileChannel channel = file.getChannel();
+            // One buffer per download thread, reused by its segments
+            ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(this::allocateBuffer);
+            ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.max(1, Math.min(parallelism, segments.size())),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "ArtifactoryDownloader"));
+            try {
+                List<Future<Void>> futures = new ArrayList<>();
+                for (Segment segment : segments) {
+                    futures.add(executor.submit(() -> {
+                        writeAt(segment.opener.open(), channel, segment.offset, buffers.get());
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(String.format("Failed to download %s", path), cause);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Direct, as the file channel would otherwise copy a heap buffer into a temporary direct buffer on each write
+     */
+    private ByteBuffer allocateBuffer() {
+        return ByteBuffer.allocateDirect(settings.getDownloadBufferSizeBytes());
+    }
+
+    /**
+     * Stream content into the file channel at the given position. The buffer is filled before each positional
+     * write, so large downloads are written with few system calls
+     */
+    private void writeAt(InputStream content, FileChannel channel, long position, ByteBuffer buffer)
+            throws IOException {
+        long start = System.nanoTime();
+        long offset = position;
+        buffer.clear();
+        try (ReadableByteChannel in = Channels.newChannel(content)) {
+            boolean more = true;
+            while (more) {
+                while (buffer.hasRemaining()) {
+                    if (in.read(buffer) < 0) {
+                        more = false;
+                        break;
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    offset += channel.write(buffer, offset);
+                }
+                buffer.clear();
+            }
+        } finally {
+            ArtifactoryMetrics.get().recordDownload(offset - position, System.nanoTime() - start);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    private static final class Segment {
+        private final long offset;
+        private final StreamOpener opener;
+
+        private Segment(long offset, StreamOpener opener) {
+            this.offset = offset;
+            this.opener = opener;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * Metadata of an artifact or folder, as returned by a single search
+ */
+public final class ArtifactoryItemInfo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+    private final boolean folder;
+    private final long size;
+    private final long lastModified;
+    private final ArtifactoryChecksums checksums;
+    private final long lastDownloaded;
+    private final HashMap<String, String> properties;
+
+    public ArtifactoryItemInfo(
+            String path, boolean folder, long size, long lastModified, ArtifactoryChecksums checksums) {
+        this(path, folder, size, lastModified, checksums, 0);
+    }
+
+    public ArtifactoryItemInfo(
+            String path,
+            boolean folder,
+            long size,
+            long lastModified,
+            ArtifactoryChecksums checksums,
+            long lastDownloaded) {
+        this(path, folder, size, lastModified, checksums, lastDownloaded, null);
+    }
+
+    public ArtifactoryItemInfo(
+            String path,
+            boolean folder,
+            long size,
+            long lastModified,
+            ArtifactoryChecksums checksums,
+            long lastDownloaded,
+            Map<String, String> properties) {
+        this.path = path;
+        this.folder = folder;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.checksums = checksums;
+        this.lastDownloaded = lastDownloaded;
+        this.properties = properties != null ? new HashMap<>(properties) : null;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isFolder() {
+        return folder;
+    }
+
+    public boolean isFile() {
+        return !folder;
+    }
+
+    /**
+     * @return the size of the file, 0 for a folder
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the last time the item was modified or deployed again, even with the same content
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the last download time of the file, 0 if never downloaded or not fetched
+     */
+    public long getLastDownloaded() {
+        return lastDownloaded;
+    }
+
+    /**
+     * @param name the name of the property
+     * @return the value of the property, null if not set or not fetched
+     */
+    public String getProperty(String name) {
+        return properties != null ? properties.get(name) : null;
+    }
+
+    /**
+     * @return true if the properties were fetched with the item, even if none is set
+     */
+    public boolean hasProperties() {
+        return properties != null;
+    }
+
+    /**
+     * @return the properties of the item, empty if not fetched
+     */
+    public Map<String, String> getProperties() {
+        return properties != null ? Collections.unmodifiableMap(properties) : Map.of();
+    }
+
+    /**
+     * @return the checksums of the file, null for a folder
+     */
+    public ArtifactoryChecksums getChecksums() {
+        return checksums;
+    }
+
+    /**
+     * Parse an item of an AQL search result. Missing fields are left empty
+     * @param json the item
+     * @return the item info, without properties
+     */
+    static ArtifactoryItemInfo fromAqlJson(JSONObject json) {
+        return fromAqlJson(json, false);
+    }
+
+    /**
+     * Parse an item of an AQL search result. Missing fields are left empty
+     * @param json the item
+     * @param withProperties true if the search included the properties, so that none means none set
+     * @return the item info
+     */
+    static ArtifactoryItemInfo fromAqlJson(JSONObject json, boolean withProperties) {
+        String parent = json.optString("path", ".");
+        String name = json.optString("name", "");
+        String path = parent.isEmpty() || parent.equals(".") ? name : parent + "/" + name;
+        boolean folder = "folder".equals(json.optString("type", "file"));
+        String sha1 = json.optString("actual_sha1", null);
+        String sha256 = json.optString("sha256", null);
+        long downloaded = 0;
+        JSONArray stats = json.optJSONArray("stats");
+        if (stats != null && !stats.isEmpty()) {
+            downloaded = parseDate(stats.getJSONObject(0).optString("downloaded", null));
+        }
+        Map<String, String> properties = withProperties ? new HashMap<>() : null;
+        JSONArray props = json.optJSONArray("properties");
+        if (props != null && properties != null) {
+            for (int i = 0; i < props.size(); i++) {
+                JSONObject prop = props.getJSONObject(i);
+                properties.put(prop.optString("key"), prop.optString("value", ""));
+            }
+        }
+        return new ArtifactoryItemInfo(
+                path,
+                folder,
+                json.optLong("size", 0),
+                Math.max(parseDate(json.optString("modified", null)), parseDate(json.optString("updated", null))),
+                !folder && (sha1 != null || sha256 != null) ? new ArtifactoryChecksums(sha1, sha256) : null,
+                downloaded,
+                properties);
+    }
+
+    static long parseDate(String date) {
+        if (date == null || date.isEmpty()) {
+            return 0;
+        }
+        try {
+            return OffsetDateTime.parse(date, DateTimeFormatter.ISO_OFFSET_DATE_TIME)
+                    .toInstant()
+                    .toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
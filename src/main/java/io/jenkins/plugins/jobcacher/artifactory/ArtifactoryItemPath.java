@@ -4,26 +4,50 @@ import hudson.AbortException;
 import hudson.FilePath;
 import hudson.model.Job;
 import hudson.remoting.VirtualChannel;
-import hudson.util.IOUtils;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import jenkins.MasterToSlaveFileCallable;
 import jenkins.plugins.itemstorage.ObjectPath;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.StaplerResponse2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ArtifactoryItemPath extends ObjectPath {
 
+    public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryItemPath.class);
+
     private final ArtifactoryClient client;
     private final String fullName;
     private final String path;
+    private final ArtifactoryTransferSettings settings;
+
+    /**
+     * Metadata fetched for this path, kept for the lifetime of the cache operation
+     */
+    private ArtifactoryItemInfo info;
+
+    private boolean infoLoaded;
+
+    /**
+     * Cache restored instead of this missing path, found with a restore key
+     */
+    private String restoredFrom;
 
     public ArtifactoryItemPath(final ArtifactoryClient client, final String fullName, final String path) {
+        this(client, fullName, path, new ArtifactoryTransferSettings());
+    }
+
+    public ArtifactoryItemPath(
+            final ArtifactoryClient client,
+            final String fullName,
+            final String path,
+            final ArtifactoryTransferSettings settings) {
         this.client = client;
         this.fullName = fullName;
         this.path = path;
+        this.settings = settings;
     }
 
     public ArtifactoryClient getClient() {
@@ -38,84 +62,272 @@ public class ArtifactoryItemPath extends ObjectPath {
         return path;
     }
 
+    public ArtifactoryTransferSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Get the metadata of this path. Fetched once with a single request then reused
+     * @return the metadata, or null if nothing is stored at this path
+     * @throws IOException if the metadata cannot be fetched
+     */
+    public synchronized ArtifactoryItemInfo getInfo() throws IOException {
+        if (!infoLoaded) {
+            info = client.info(String.format("%s/%s", fullName, path));
+            infoLoaded = true;
+        }
+        return info;
+    }
+
+    synchronized ArtifactoryItemInfo getLoadedInfo() {
+        return infoLoaded ? info : null;
+    }
+
+    synchronized void resetInfo() {
+        info = null;
+        infoLoaded = false;
+        restoredFrom = null;
+    }
+
+    /**
+     * Find the cache to restore instead of this missing path. Restore keys that are a prefix of this path are tried
+     * in order, each with a single search, and the most recently modified cache with the same extension wins
+     * @return the path of the cache, or null if no restore key matches
+     * @throws IOException if a search fails
+     */
+    public synchronized String resolveRestoreKeys() throws IOException {
+        if (restoredFrom != null) {
+            return restoredFrom;
+        }
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        int dot = name.indexOf('.');
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (String key : settings.getRestoreKeys()) {
+            if (!path.startsWith(key) || path.equals(key)) {
+                continue;
+            }
+            int slash = key.lastIndexOf('/');
+            String folder = slash >= 0 ? String.format("%s/%s", fullName, key.substring(0, slash)) : fullName;
+            ArtifactoryItemInfo match = client.findLatest(folder, key.substring(slash + 1) + "*" + extension);
+            if (match != null) {
+                LOGGER.info(
+                        "Cache {}/{} is missing, restoring {} matched by restore key {}",
+                        fullName,
+                        path,
+                        match.getPath(),
+                        key);
+                restoredFrom = match.getPath();
+                return restoredFrom;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the path to restore: this path if stored, or else the cache found by restore key
+     * @return the path in the repository, or null if there is nothing to restore
+     * @throws IOException if a search fails
+     */
+    String resolveSource() throws IOException {
+        if (isStored()) {
+            return String.format("%s/%s", fullName, path);
+        }
+        return settings.getRestoreKeys().isEmpty() ? null : resolveRestoreKeys();
+    }
+
+    /**
+     * @return true if saves and deletions through this path are ignored
+     */
+    boolean isReadOnly() {
+        return false;
+    }
+
     @Override
     public ArtifactoryItemPath child(String childPath) throws IOException, InterruptedException {
-        return new ArtifactoryItemPath(client, fullName, String.format("%s/%s", path, childPath));
+        return new ArtifactoryItemPath(client, fullName, String.format("%s/%s", path, childPath), settings);
     }
 
     @Override
     public void copyTo(FilePath target) throws IOException, InterruptedException {
-        target.act(new DownloadFromArtifactoryStorage(client.getConfig(), String.format("%s/%s", fullName, path)));
+        String source = getRestoredFrom();
+        // The metadata of a cache found by restore key is fetched by the agent
+        ArtifactoryItemInfo sourceInfo = source != null ? null : getLoadedInfo();
+        if (source == null) {
+            source = String.format("%s/%s", fullName, path);
+        }
+        try (ArtifactoryMetrics.Timer timer = ArtifactoryMetrics.get().start(fullName, ArtifactoryMetrics.COPY_TO)) {
+            timer.succeeded(
+                    target.act(new DownloadFromArtifactoryStorage(client.getConfig(), settings, source, sourceInfo)));
+        }
+    }
+
+    private synchronized String getRestoredFrom() {
+        return restoredFrom;
     }
 
+    /**
+     * Upload the cache. Concurrent saves of the same cache are coordinated by {@link ArtifactorySaveCoordinator}:
+     * a save superseded by a newer one, or with the content already uploaded, is skipped. The agent hashes the cache
+     * as part of its upload, and compares it to the content last uploaded
+     */
     @Override
     public void copyFrom(FilePath source) throws IOException, InterruptedException {
-        source.act(new UploadToArtifactoryStorage(client.getConfig(), String.format("%s/%s", fullName, path)));
+        resetInfo();
+        String target = String.format("%s/%s", fullName, path);
+        ArtifactorySaveCoordinator.Lease lease =
+                ArtifactorySaveCoordinator.get().acquire(ArtifactoryMetadataCache.key(client.getConfig(), target));
+        if (lease == null) {
+            LOGGER.info("Skipping save of {}, superseded by a newer save", target);
+            return;
+        }
+        try (lease) {
+            String previous = lease.getUploaded();
+            // With agent metadata checks, the agent checks if the unchanged content is still stored
+            boolean checkOnAgent = settings.isAgentMetadata();
+            if (previous != null && !checkOnAgent && !isStored()) {
+                previous = null;
+            }
+            resetInfo();
+            ArtifactoryUploader.Saved saved;
+            try (ArtifactoryMetrics.Timer timer =
+                    ArtifactoryMetrics.get().start(fullName, ArtifactoryMetrics.COPY_FROM)) {
+                saved = source.act(
+                        new UploadToArtifactoryStorage(client.getConfig(), settings, target, previous, checkOnAgent));
+                timer.succeeded(saved.size);
+            } finally {
+                // The upload ran on the agent, so the metadata cached by this JVM is stale
+                client.invalidate(target);
+            }
+            if (saved.checked) {
+                ArtifactoryMetrics.get().recordAgentCheck();
+            }
+            if (saved.skipped) {
+                LOGGER.info("Skipping save of {}, content already uploaded", target);
+                lease.skipped();
+                return;
+            }
+            lease.saved(saved.hash);
+        }
     }
 
+    /**
+     * @return true if the cache is stored at this path, or if a cache matches one of the restore keys
+     */
     @Override
     public boolean exists() throws IOException, InterruptedException {
-        return client.isFile(String.format("%s/%s", fullName, path));
+        try {
+            return isStored() || (!settings.getRestoreKeys().isEmpty() && resolveRestoreKeys() != null);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    boolean isStored() {
+        try {
+            ArtifactoryItemInfo info = getInfo();
+            return info != null && info.isFile();
+        } catch (IOException e) {
+            return false;
+        }
     }
 
     @Override
     public void deleteRecursive() throws IOException, InterruptedException {
-        client.deleteArtifact(String.format("%s/%s", fullName, path));
+        resetInfo();
+        String target = String.format("%s/%s", fullName, path);
+        try (ArtifactoryMetrics.Timer timer = ArtifactoryMetrics.get().start(fullName, ArtifactoryMetrics.DELETE)) {
+            ArtifactoryDeleter deleter = new ArtifactoryDeleter(client, settings);
+            deleter.delete(target);
+            // Parts left without their manifest would be kept forever, as retention takes them for an upload
+            if (client.isFolder(target + ArtifactoryUploader.PARTS_SUFFIX)) {
+                deleter.delete(target + ArtifactoryUploader.PARTS_SUFFIX);
+            }
+            timer.succeeded();
+        } finally {
+            ArtifactorySaveCoordinator.get().forget(ArtifactoryMetadataCache.key(client.getConfig(), target));
+        }
     }
 
     @Override
     public HttpResponse browse(StaplerRequest2 request, StaplerResponse2 response, Job<?, ?> job, String name)
             throws IOException {
-        return null;
+        long start = 0;
+        String param = request.getParameter("start");
+        if (param != null) {
+            try {
+                start = Long.parseLong(param);
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Ignoring invalid start {}", param);
+            }
+        }
+        return new ArtifactoryCacheBrowser(client, String.format("%s/%s", fullName, path)).page(start);
     }
 
     /**
-     * Master to slave callable that upload a cache to Artifactory storage.
+     * Master to slave callable that upload a cache to Artifactory storage, unless it is the content last uploaded.
+     * Return the outcome of the save, with the hash of the cache
      */
-    private static class UploadToArtifactoryStorage extends MasterToSlaveFileCallable<Void> {
+    private static class UploadToArtifactoryStorage extends MasterToSlaveFileCallable<ArtifactoryUploader.Saved> {
 
         private final ArtifactoryClient.ArtifactoryConfig config;
+        private final ArtifactoryTransferSettings settings;
         private final String path;
+        private final String previous;
+        private final boolean checkStored;
 
-        public UploadToArtifactoryStorage(ArtifactoryClient.ArtifactoryConfig config, String path) {
+        public UploadToArtifactoryStorage(
+                ArtifactoryClient.ArtifactoryConfig config,
+                ArtifactoryTransferSettings settings,
+                String path,
+                String previous,
+                boolean checkStored) {
             this.config = config;
+            this.settings = settings;
             this.path = path;
+            this.previous = previous;
+            this.checkStored = checkStored;
         }
 
         @Override
-        public Void invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+        public ArtifactoryUploader.Saved invoke(File f, VirtualChannel channel)
+                throws IOException, InterruptedException {
             try (ArtifactoryClient client = new ArtifactoryClient(this.config)) {
-                client.uploadArtifact(f.toPath(), path);
+                return new ArtifactoryUploader(client, settings).save(f, path, previous, checkStored);
             } catch (Exception e) {
                 throw new AbortException("Unable to upload cache to Artifactory. Details: " + e.getMessage());
             }
-            return null;
         }
     }
 
     /**
-     * Master to slave callable that upload a cache to Artifactory storage.
+     * Master to slave callable that download a cache from Artifactory storage. Return the downloaded size
      */
-    private static class DownloadFromArtifactoryStorage extends MasterToSlaveFileCallable<Void> {
+    private static class DownloadFromArtifactoryStorage extends MasterToSlaveFileCallable<Long> {
 
         private final ArtifactoryClient.ArtifactoryConfig config;
+        private final ArtifactoryTransferSettings settings;
         private final String path;
+        private final ArtifactoryItemInfo info;
 
-        public DownloadFromArtifactoryStorage(ArtifactoryClient.ArtifactoryConfig config, String path) {
+        public DownloadFromArtifactoryStorage(
+                ArtifactoryClient.ArtifactoryConfig config,
+                ArtifactoryTransferSettings settings,
+                String path,
+                ArtifactoryItemInfo info) {
             this.config = config;
+            this.settings = settings;
             this.path = path;
+            this.info = info;
         }
 
         @Override
-        public Void invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+        public Long invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
             try (ArtifactoryClient client = new ArtifactoryClient(this.config)) {
-                try (InputStream is = client.downloadArtifact(path)) {
-                    IOUtils.copy(is, f);
-                }
+                new ArtifactoryDownloader(client, settings).download(path, f, info);
             } catch (Exception e) {
                 throw new AbortException("Unable to upload cache to Artifactory. Details: " + e.getMessage());
             }
-            return null;
+            return f.length();
         }
     }
 }
@@ -6,17 +6,30 @@ import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import hudson.Extension;
 import hudson.ExtensionList;
+import hudson.FilePath;
 import hudson.model.Item;
+import hudson.model.Job;
 import hudson.model.listeners.ItemListener;
 import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import jenkins.model.Jenkins;
 import jenkins.plugins.itemstorage.GlobalItemStorage;
 import jenkins.plugins.itemstorage.ItemStorage;
@@ -24,6 +37,8 @@ import jenkins.plugins.itemstorage.ItemStorageDescriptor;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.*;
 import org.kohsuke.stapler.interceptor.RequirePOST;
+import org.kohsuke.stapler.json.JsonHttpResponse;
+import org.kohsuke.stapler.verb.GET;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,10 +53,44 @@ public class ArtifactoryItemStorage extends ItemStorage<ArtifactoryItemPath> imp
 
     public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryItemStorage.class);
 
+    /**
+     * Folder of the deduplicated chunks below the prefix. Starts with a dot so it is never taken for a job
+     */
+    static final String CHUNKS_FOLDER = ".chunks";
+
+    /**
+     * Folder of the uploads not yet moved to their path, below the prefix
+     */
+    static final String STAGING_FOLDER = ".staging";
+
     private String storageCredentialId;
     private String serverUrl;
     private String repository;
     private String prefix;
+    private Integer downloadChunkSizeMb;
+    private Integer downloadParallelism;
+    private Integer multipartThresholdMb;
+    private Integer uploadPartSizeMb;
+    private Integer uploadParallelism;
+    private String localCacheDirectory;
+    private Integer localCacheMaxSizeMb;
+    private Integer downloadBufferSizeKb;
+    private Integer deleteParallelism;
+    private Integer deleteRequestsPerSecond;
+    private String codec;
+    private Integer codecLevel;
+    private boolean chunkDeduplication;
+    private Integer chunkSizeKb;
+    private String restoreKeys;
+    private boolean branchSeeding;
+    private String defaultBranch;
+    private boolean agentMetadata;
+    private Integer retentionMaxAgeDays;
+    private Integer retentionMaxUnusedDays;
+    private Integer retentionMaxJobSizeMb;
+    private Integer retentionMaxTotalSizeMb;
+    private boolean retentionOrphanBranches;
+    private boolean retentionDryRun;
 
     @DataBoundConstructor
     public ArtifactoryItemStorage() {}
@@ -66,6 +115,126 @@ public class ArtifactoryItemStorage extends ItemStorage<ArtifactoryItemPath> imp
         this.repository = repository;
     }
 
+    @DataBoundSetter
+    public void setDownloadChunkSizeMb(Integer downloadChunkSizeMb) {
+        this.downloadChunkSizeMb = downloadChunkSizeMb;
+    }
+
+    @DataBoundSetter
+    public void setDownloadParallelism(Integer downloadParallelism) {
+        this.downloadParallelism = downloadParallelism;
+    }
+
+    @DataBoundSetter
+    public void setMultipartThresholdMb(Integer multipartThresholdMb) {
+        this.multipartThresholdMb = multipartThresholdMb;
+    }
+
+    @DataBoundSetter
+    public void setUploadPartSizeMb(Integer uploadPartSizeMb) {
+        this.uploadPartSizeMb = uploadPartSizeMb;
+    }
+
+    @DataBoundSetter
+    public void setUploadParallelism(Integer uploadParallelism) {
+        this.uploadParallelism = uploadParallelism;
+    }
+
+    @DataBoundSetter
+    public void setLocalCacheDirectory(String localCacheDirectory) {
+        this.localCacheDirectory = localCacheDirectory;
+    }
+
+    @DataBoundSetter
+    public void setLocalCacheMaxSizeMb(Integer localCacheMaxSizeMb) {
+        this.localCacheMaxSizeMb = localCacheMaxSizeMb;
+    }
+
+    @DataBoundSetter
+    public void setDownloadBufferSizeKb(Integer downloadBufferSizeKb) {
+        this.downloadBufferSizeKb = downloadBufferSizeKb;
+    }
+
+    @DataBoundSetter
+    public void setDeleteParallelism(Integer deleteParallelism) {
+        this.deleteParallelism = deleteParallelism;
+    }
+
+    @DataBoundSetter
+    public void setDeleteRequestsPerSecond(Integer deleteRequestsPerSecond) {
+        this.deleteRequestsPerSecond = deleteRequestsPerSecond;
+    }
+
+    @DataBoundSetter
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    @DataBoundSetter
+    public void setCodecLevel(Integer codecLevel) {
+        this.codecLevel = codecLevel;
+    }
+
+    @DataBoundSetter
+    public void setChunkDeduplication(boolean chunkDeduplication) {
+        this.chunkDeduplication = chunkDeduplication;
+    }
+
+    @DataBoundSetter
+    public void setChunkSizeKb(Integer chunkSizeKb) {
+        this.chunkSizeKb = chunkSizeKb;
+    }
+
+    @DataBoundSetter
+    public void setRestoreKeys(String restoreKeys) {
+        this.restoreKeys = restoreKeys;
+    }
+
+    @DataBoundSetter
+    public void setBranchSeeding(boolean branchSeeding) {
+        this.branchSeeding = branchSeeding;
+    }
+
+    @DataBoundSetter
+    public void setDefaultBranch(String defaultBranch) {
+        this.defaultBranch = defaultBranch;
+    }
+
+    @DataBoundSetter
+    public void setAgentMetadata(boolean agentMetadata) {
+        this.agentMetadata = agentMetadata;
+    }
+
+    @DataBoundSetter
+    public void setRetentionMaxAgeDays(Integer retentionMaxAgeDays) {
+        this.retentionMaxAgeDays = retentionMaxAgeDays;
+    }
+
+    @DataBoundSetter
+    public void setRetentionMaxUnusedDays(Integer retentionMaxUnusedDays) {
+        this.retentionMaxUnusedDays = retentionMaxUnusedDays;
+    }
+
+    @DataBoundSetter
+    public void setRetentionMaxJobSizeMb(Integer retentionMaxJobSizeMb) {
+        this.retentionMaxJobSizeMb = retentionMaxJobSizeMb;
+    }
+
+    @DataBoundSetter
+    public void setRetentionMaxTotalSizeMb(Integer retentionMaxTotalSizeMb) {
+        this.retentionMaxTotalSizeMb = retentionMaxTotalSizeMb;
+    }
+
+    @DataBoundSetter
+    public void setRetentionOrphanBranches(boolean retentionOrphanBranches) {
+        this.retentionOrphanBranches = retentionOrphanBranches;
+    }
+
+    @DataBoundSetter
+    public void setRetentionDryRun(boolean retentionDryRun) {
+        this.retentionDryRun = retentionDryRun;
+    }
+
     public String getStorageCredentialId() {
         return storageCredentialId;
     }
@@ -82,46 +251,384 @@ public class ArtifactoryItemStorage extends ItemStorage<ArtifactoryItemPath> imp
         return prefix;
     }
 
+    public int getDownloadChunkSizeMb() {
+        return downloadChunkSizeMb != null && downloadChunkSizeMb > 0
+                ? downloadChunkSizeMb
+                : ArtifactoryTransferSettings.DEFAULT_DOWNLOAD_CHUNK_SIZE_MB;
+    }
+
+    public int getDownloadParallelism() {
+        return downloadParallelism != null && downloadParallelism > 0
+                ? downloadParallelism
+                : ArtifactoryTransferSettings.DEFAULT_DOWNLOAD_PARALLELISM;
+    }
+
+    public int getMultipartThresholdMb() {
+        return multipartThresholdMb != null && multipartThresholdMb >= 0
+                ? multipartThresholdMb
+                : ArtifactoryTransferSettings.DEFAULT_MULTIPART_THRESHOLD_MB;
+    }
+
+    public int getUploadPartSizeMb() {
+        return uploadPartSizeMb != null && uploadPartSizeMb > 0
+                ? uploadPartSizeMb
+                : ArtifactoryTransferSettings.DEFAULT_UPLOAD_PART_SIZE_MB;
+    }
+
+    public int getUploadParallelism() {
+        return uploadParallelism != null && uploadParallelism > 0
+                ? uploadParallelism
+                : ArtifactoryTransferSettings.DEFAULT_UPLOAD_PARALLELISM;
+    }
+
+    public String getLocalCacheDirectory() {
+        return localCacheDirectory;
+    }
+
+    public int getLocalCacheMaxSizeMb() {
+        return localCacheMaxSizeMb != null && localCacheMaxSizeMb > 0
+                ? localCacheMaxSizeMb
+                : ArtifactoryTransferSettings.DEFAULT_LOCAL_CACHE_MAX_SIZE_MB;
+    }
+
+    public int getDownloadBufferSizeKb() {
+        return downloadBufferSizeKb != null && downloadBufferSizeKb > 0
+                ? downloadBufferSizeKb
+                : ArtifactoryTransferSettings.DEFAULT_DOWNLOAD_BUFFER_SIZE_KB;
+    }
+
+    public int getDeleteParallelism() {
+        return deleteParallelism != null && deleteParallelism > 0
+                ? deleteParallelism
+                : ArtifactoryTransferSettings.DEFAULT_DELETE_PARALLELISM;
+    }
+
+    public int getDeleteRequestsPerSecond() {
+        return deleteRequestsPerSecond != null && deleteRequestsPerSecond >= 0
+                ? deleteRequestsPerSecond
+                : ArtifactoryTransferSettings.DEFAULT_DELETE_REQUESTS_PER_SECOND;
+    }
+
+    public String getCodec() {
+        return ArtifactoryCodec.of(codec).getId();
+    }
+
+    public int getCodecLevel() {
+        return codecLevel != null && codecLevel > 0 ? codecLevel : 0;
+    }
+
+    public boolean isChunkDeduplication() {
+        return chunkDeduplication;
+    }
+
+    public int getChunkSizeKb() {
+        return chunkSizeKb != null && chunkSizeKb > 0 ? chunkSizeKb : ArtifactoryTransferSettings.DEFAULT_CHUNK_SIZE_KB;
+    }
+
+    public String getRestoreKeys() {
+        return restoreKeys;
+    }
+
+    public boolean isBranchSeeding() {
+        return branchSeeding;
+    }
+
+    public String getDefaultBranch() {
+        return defaultBranch;
+    }
+
+    public boolean isAgentMetadata() {
+        return agentMetadata;
+    }
+
+    /**
+     * @return the restore keys, one per line, in the order they are tried
+     */
+    List<String> getRestoreKeyList() {
+        if (restoreKeys == null) {
+            return List.of();
+        }
+        return restoreKeys
+                .lines()
+                .map(String::trim)
+                .filter(key -> !key.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the folder of the deduplicated chunks, shared by all the jobs below the prefix
+     */
+    String getChunkRoot() {
+        return internalFolder(CHUNKS_FOLDER);
+    }
+
+    /**
+     * @return the folder of the uploads not yet moved to their path
+     */
+    String getStagingRoot() {
+        return internalFolder(STAGING_FOLDER);
+    }
+
+    private String internalFolder(String name) {
+        String root = prefix == null ? "" : prefix.replaceAll("^/+|/+$", "");
+        return root.isEmpty() ? name : root + "/" + name;
+    }
+
+    public int getRetentionMaxAgeDays() {
+        return retentionMaxAgeDays != null && retentionMaxAgeDays > 0 ? retentionMaxAgeDays : 0;
+    }
+
+    public int getRetentionMaxUnusedDays() {
+        return retentionMaxUnusedDays != null && retentionMaxUnusedDays > 0 ? retentionMaxUnusedDays : 0;
+    }
+
+    public int getRetentionMaxJobSizeMb() {
+        return retentionMaxJobSizeMb != null && retentionMaxJobSizeMb > 0 ? retentionMaxJobSizeMb : 0;
+    }
+
+    public int getRetentionMaxTotalSizeMb() {
+        return retentionMaxTotalSizeMb != null && retentionMaxTotalSizeMb > 0 ? retentionMaxTotalSizeMb : 0;
+    }
+
+    public boolean isRetentionOrphanBranches() {
+        return retentionOrphanBranches;
+    }
+
+    public boolean isRetentionDryRun() {
+        return retentionDryRun;
+    }
+
     @Override
     public ArtifactoryItemPath getObjectPath(Item item, String path) {
         return new ArtifactoryItemPath(
-                createArtifactoryClient(), String.format("%s/%s", prefix, item.getFullName()), path);
+                createArtifactoryClient(),
+                String.format("%s/%s", prefix, item.getFullName()),
+                path,
+                createTransferSettings());
     }
 
     @Override
     public ArtifactoryItemPath getObjectPathForBranch(Item item, String path, String branch) {
-        String branchPath = new File(item.getFullName()).getParent() + "/" + branch;
-        return new ArtifactoryItemPath(createArtifactoryClient(), String.format("%s/%s", prefix, branchPath), path);
+        File itemPath = new File(item.getFullName());
+        if (branchSeeding) {
+            List<String> preferredBranches = new ArrayList<>();
+            if (branch != null && !branch.isEmpty()) {
+                preferredBranches.add(branch);
+            }
+            if (defaultBranch != null && !defaultBranch.trim().isEmpty()) {
+                preferredBranches.add(defaultBranch.trim());
+            }
+            return new ArtifactoryBranchSeedPath(
+                    createArtifactoryClient(),
+                    String.format("%s/%s", prefix, itemPath.getParent()),
+                    itemPath.getName(),
+                    preferredBranches,
+                    path,
+                    createTransferSettings());
+        }
+        String branchPath = itemPath.getParent() + "/" + branch;
+        return new ArtifactoryItemPath(
+                createArtifactoryClient(), String.format("%s/%s", prefix, branchPath), path, createTransferSettings());
     }
 
+    /**
+     * Restore several caches of a build at once, with a single callable per agent transferring them concurrently
+     * @param caches the caches to restore, and the file to restore each one to
+     * @return the caches restored. Missing caches are skipped
+     * @throws IOException if a cache cannot be restored. The other caches are restored anyway
+     * @throws InterruptedException if interrupted
+     */
+    public Set<ArtifactoryItemPath> restore(Map<ArtifactoryItemPath, FilePath> caches)
+            throws IOException, InterruptedException {
+        return new ArtifactoryBatchTransfer(ArtifactoryBatchTransfer.PARALLELISM).restore(caches);
+    }
+
+    /**
+     * Save several caches of a build at once, with a single callable per agent transferring them concurrently
+     * @param caches the caches to save, and the file to save each one from
+     * @throws IOException if a cache cannot be saved. The other caches are saved anyway
+     * @throws InterruptedException if interrupted
+     */
+    public void save(Map<ArtifactoryItemPath, FilePath> caches) throws IOException, InterruptedException {
+        new ArtifactoryBatchTransfer(ArtifactoryBatchTransfer.PARALLELISM).save(caches);
+    }
+
+    /**
+     * Queue the deletion of the caches of an item. Done in the background by {@link ArtifactoryOperationQueue}
+     * @param path the full name of the item
+     */
     public void deletePath(String path) {
+        ArtifactoryOperationQueue.get().delete(String.format("%s/%s", prefix, path));
+    }
+
+    /**
+     * Queue the move of the caches of an item. Done in the background by {@link ArtifactoryOperationQueue}
+     * @param fromPath the previous full name of the item
+     * @param toPath the new full name of the item
+     */
+    public void movePath(String fromPath, String toPath) {
+        ArtifactoryOperationQueue.get()
+                .move(String.format("%s/%s", prefix, fromPath), String.format("%s/%s", prefix, toPath));
+    }
+
+    /**
+     * Delete a folder of the repository if it exists. Deleted file by file when the delete parallelism is above one
+     * @param storagePath the path in the repository, prefix included
+     * @throws Exception if the folder cannot be deleted
+     */
+    void deleteStoragePath(String storagePath) throws Exception {
         try (ArtifactoryClient client = createArtifactoryClient()) {
-            if (client.isFolder(String.format("%s/%s", prefix, path))) {
-                client.deleteArtifact(String.format("%s/%s", prefix, path));
+            ArtifactoryItemInfo info = client.info(storagePath);
+            if (info != null && info.isFolder()) {
+                new ArtifactoryDeleter(client, createTransferSettings()).delete(storagePath);
             }
-        } catch (Exception e) {
-            LOGGER.error(String.format("Failed to delete path at %s", path), e);
         }
     }
 
-    public void movePath(String fromPath, String toPath) {
+    /**
+     * Move a folder of the repository if it exists. Moved file by file on Artifactory OSS
+     * @param fromStoragePath the source path in the repository, prefix included
+     * @param toStoragePath the target path in the repository, prefix included
+     * @throws Exception if the folder cannot be moved
+     */
+    void moveStoragePath(String fromStoragePath, String toStoragePath) throws Exception {
         try (ArtifactoryClient client = createArtifactoryClient()) {
-            if (client.isFolder(String.format("%s/%s", prefix, fromPath))) {
-                client.move(String.format("%s/%s", prefix, fromPath), String.format("%s/%s", prefix, toPath));
+            ArtifactoryItemInfo info = client.info(fromStoragePath);
+            if (info != null && info.isFolder()) {
+                new ArtifactoryMover(client).move(fromStoragePath, toStoragePath);
             }
-        } catch (Exception e) {
-            LOGGER.error(String.format("Failed to move path from %s to %s", fromPath, toPath), e);
         }
     }
 
+    /**
+     * Evict the caches below the prefix according to the retention settings
+     * @param log the log of the run
+     * @return the report of the run, or null if retention is disabled
+     * @throws Exception if the caches cannot be listed
+     */
+    ArtifactoryRetention.Report applyRetention(PrintStream log) throws Exception {
+        ArtifactoryRetention.Policy policy = new ArtifactoryRetention.Policy(
+                TimeUnit.DAYS.toMillis(getRetentionMaxAgeDays()),
+                TimeUnit.DAYS.toMillis(getRetentionMaxUnusedDays()),
+                getRetentionMaxJobSizeMb() * 1024L * 1024L,
+                getRetentionMaxTotalSizeMb() * 1024L * 1024L,
+                isRetentionOrphanBranches(),
+                isRetentionDryRun());
+        if (!policy.isEnabled()) {
+            return null;
+        }
+        if (prefix == null || prefix.isBlank()) {
+            log.println("Cache retention needs a prefix, so it doesn't scan the whole repository");
+            return null;
+        }
+        String root = prefix.replaceAll("^/+|/+$", "");
+        try (ArtifactoryClient client = createArtifactoryClient()) {
+            return new ArtifactoryRetention(client, root, policy, ArtifactoryItemStorage::jobOf).run(log);
+        }
+    }
+
+    /**
+     * Delete the staged uploads left by interrupted saves
+     * @param log the log of the run
+     * @param maxAgeMs the age above which a staged upload is abandoned
+     * @return the number of staged uploads deleted
+     * @throws Exception if the staging folder cannot be listed
+     */
+    int sweepStaging(PrintStream log, long maxAgeMs) throws Exception {
+        try (ArtifactoryClient client = createArtifactoryClient()) {
+            List<ArtifactoryItemInfo> staged;
+            try (Stream<ArtifactoryItemInfo> files = client.listFiles(
+                    getStagingRoot(),
+                    ArtifactoryClient.LIST_PAGE_SIZE,
+                    EnumSet.of(ArtifactoryClient.ListField.MODIFIED))) {
+                staged = files.collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            long deadline = System.currentTimeMillis() - maxAgeMs;
+            int deleted = 0;
+            for (ArtifactoryItemInfo file : staged) {
+                if (file.getLastModified() < deadline) {
+                    try {
+                        client.deleteArtifact(file.getPath());
+                        deleted++;
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Failed to delete staged upload {}", file.getPath(), e);
+                    }
+                }
+            }
+            log.printf("Deleted %d of %d staged uploads%n", deleted, staged.size());
+            return deleted;
+        }
+    }
+
+    /**
+     * Find the job owning a cache folder. The folder is the job itself, or a folder below it
+     * @param folder the cache folder, relative to the prefix
+     * @return the full name of the first item of the folder path that is a job, or null if no job owns the folder
+     */
+    private static String jobOf(String folder) {
+        Jenkins jenkins = Jenkins.get();
+        int slash = 0;
+        while (slash >= 0) {
+            slash = folder.indexOf('/', slash + 1);
+            String name = slash >= 0 ? folder.substring(0, slash) : folder;
+            Item item = jenkins.getItemByFullName(name);
+            // A branch folder below an existing multibranch project or folder is an orphan
+            if (item == null) {
+                return null;
+            }
+            if (item instanceof Job) {
+                return name;
+            }
+        }
+        return null;
+    }
+
     private ArtifactoryClient createArtifactoryClient() {
         return new ArtifactoryClient(serverUrl, repository, Utils.getCredentials(storageCredentialId));
     }
 
+    private ArtifactoryTransferSettings createTransferSettings() {
+        ArtifactoryTransferSettings settings = new ArtifactoryTransferSettings();
+        settings.setDownloadChunkSizeMb(getDownloadChunkSizeMb());
+        settings.setDownloadParallelism(getDownloadParallelism());
+        settings.setMultipartThresholdMb(getMultipartThresholdMb());
+        settings.setUploadPartSizeMb(getUploadPartSizeMb());
+        settings.setUploadParallelism(getUploadParallelism());
+        settings.setLocalCacheDirectory(getLocalCacheDirectory());
+        settings.setLocalCacheMaxSizeMb(getLocalCacheMaxSizeMb());
+        settings.setDownloadBufferSizeKb(getDownloadBufferSizeKb());
+        settings.setDeleteParallelism(getDeleteParallelism());
+        settings.setDeleteRequestsPerSecond(getDeleteRequestsPerSecond());
+        settings.setCodec(ArtifactoryCodec.of(codec));
+        settings.setCodecLevel(getCodecLevel());
+        settings.setStagingRoot(getStagingRoot());
+        if (chunkDeduplication) {
+            settings.setChunkRoot(getChunkRoot());
+            settings.setChunkSizeKb(getChunkSizeKb());
+        }
+        settings.setRestoreKeys(getRestoreKeyList());
+        settings.setAgentMetadata(agentMetadata);
+        return settings;
+    }
+
     public static ArtifactoryItemStorage get() {
         return ExtensionList.lookupSingleton(ArtifactoryItemStorage.class);
     }
 
+    /**
+     * @return the global storage if it is Artifactory, null otherwise
+     */
+    static ArtifactoryItemStorage lookupGlobalStorage() {
+        ItemStorage<?> storage = GlobalItemStorage.get().getStorage();
+        if (storage instanceof ArtifactoryItemStorage) {
+            return (ArtifactoryItemStorage) storage;
+        } else {
+            return null;
+        }
+    }
+
     @Extension
     public static final class DescriptorImpl extends ItemStorageDescriptor<ArtifactoryItemPath> {
 
@@ -158,6 +665,16 @@ public class ArtifactoryItemStorage extends ItemStorage<ArtifactoryItemPath> imp
                     .includeCurrentValue(get().getStorageCredentialId());
         }
 
+        @SuppressWarnings("lgtm[jenkins/csrf]")
+        public ListBoxModel doFillCodecItems() {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            ListBoxModel result = new ListBoxModel();
+            for (ArtifactoryCodec codec : ArtifactoryCodec.values()) {
+                result.add(codec.getId());
+            }
+            return result;
+        }
+
         @SuppressWarnings("lgtm[jenkins/csrf]")
         public FormValidation doCheckRepository(@QueryParameter String repository) {
             Jenkins.get().checkPermission(Jenkins.ADMINISTER);
@@ -180,6 +697,51 @@ public class ArtifactoryItemStorage extends ItemStorage<ArtifactoryItemPath> imp
             return ret;
         }
 
+        /**
+         * Transfer metrics of the controller, along with the client pool and metadata cache counters.
+         * Served at {@code descriptorByName/io.jenkins.plugins.jobcacher.artifactory.ArtifactoryItemStorage/metrics}
+         */
+        @GET
+        public HttpResponse doMetrics() {
+            Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+            JSONObject json = ArtifactoryMetrics.get().toJson();
+            ArtifactoryClientPool pool = ArtifactoryClientPool.get();
+            JSONObject clientPool = new JSONObject();
+            clientPool.put("size", pool.getSize());
+            clientPool.put("hits", pool.getHits());
+            clientPool.put("misses", pool.getMisses());
+            clientPool.put("evictions", pool.getEvictions());
+            json.put("clientPool", clientPool);
+            ArtifactoryMetadataCache metadataCache = ArtifactoryMetadataCache.get();
+            JSONObject metadata = new JSONObject();
+            metadata.put("size", metadataCache.getSize());
+            metadata.put("hits", metadataCache.getHits());
+            metadata.put("misses", metadataCache.getMisses());
+            metadata.put("evictions", metadataCache.getEvictions());
+            metadata.put("coalesced", metadataCache.getCoalesced());
+            json.put("metadataCache", metadata);
+            ArtifactoryOperationQueue queue = ArtifactoryOperationQueue.get();
+            JSONObject operationQueue = new JSONObject();
+            operationQueue.put("depth", queue.getDepth());
+            operationQueue.put("lagMillis", queue.getLagMillis());
+            operationQueue.put("completed", queue.getCompleted());
+            operationQueue.put("retried", queue.getRetried());
+            operationQueue.put("abandoned", queue.getAbandoned());
+            json.put("operationQueue", operationQueue);
+            ArtifactorySaveCoordinator coordinator = ArtifactorySaveCoordinator.get();
+            JSONObject saves = new JSONObject();
+            saves.put("saved", coordinator.getSaved());
+            saves.put("unchanged", coordinator.getUnchanged());
+            saves.put("superseded", coordinator.getSuperseded());
+            saves.put("waited", coordinator.getWaited());
+            json.put("saves", saves);
+            ArtifactoryRetention.Report retention = ArtifactoryRetention.getLastReport();
+            if (retention != null) {
+                json.put("retention", retention.toJson());
+            }
+            return new JsonHttpResponse(json);
+        }
+
         @RequirePOST
         public FormValidation doValidateArtifactoryConfig(
                 @QueryParameter("serverUrl") final String serverUrl,
@@ -243,12 +805,7 @@ public class ArtifactoryItemStorage extends ItemStorage<ArtifactoryItemPath> imp
         }
 
         private ArtifactoryItemStorage lookupArtifactoryStorage() {
-            ItemStorage<?> storage = GlobalItemStorage.get().getStorage();
-            if (storage instanceof ArtifactoryItemStorage) {
-                return (ArtifactoryItemStorage) storage;
-            } else {
-                return null;
-            }
+            return lookupGlobalStorage();
         }
     }
 }
@@ -0,0 +1,176 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Agent local store of downloaded archives, addressed by their SHA-256 and bounded in size.
+ * The least recently used archives are evicted first. Restoring from the store hard links the read-only archive when
+ * the file system allows it, and copies it otherwise.
+ */
+final class ArtifactoryLocalCache {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryLocalCache.class);
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * Guards the stores of this agent JVM. Other JVMs sharing the directory are handled by atomic moves
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * Restores hard link the read-only entries only where a read-only file can still be deleted through its link
+     */
+    private static final boolean HARD_LINKS =
+            FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private final Path directory;
+    private final long maxSizeBytes;
+
+    ArtifactoryLocalCache(Path directory, long maxSizeBytes) {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Restore an archive from the store
+     * @param sha256 the SHA-256 of the archive
+     * @param target the file to write
+     * @return true if the archive was in the store
+     */
+    boolean restore(String sha256, Path target) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            return false;
+        }
+        Path entry = directory.resolve(sha256);
+        synchronized (LOCK) {
+            if (!Files.isRegularFile(entry)) {
+                MISSES.incrementAndGet();
+                return false;
+            }
+            try {
+                Files.deleteIfExists(target);
+                if (!HARD_LINKS || !link(target, entry)) {
+                    Files.copy(entry, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                // Modification time tracks the last use for the eviction
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                HITS.incrementAndGet();
+                LOGGER.trace("Restored {} from local cache {}", target, directory);
+                return true;
+            } catch (IOException e) {
+                LOGGER.debug("Failed to restore {} from local cache", sha256, e);
+                MISSES.incrementAndGet();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Add a downloaded archive to the store, then evict the least recently used archives above the maximum size
+     * @param sha256 the SHA-256 of the archive
+     * @param source the downloaded archive
+     */
+    void store(String sha256, Path source) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            return;
+        }
+        try {
+            if (Files.size(source) > maxSizeBytes) {
+                return;
+            }
+            Files.createDirectories(directory);
+            Path entry = directory.resolve(sha256);
+            synchronized (LOCK) {
+                if (Files.exists(entry)) {
+                    return;
+                }
+                // Copied rather than linked, so later writes to the downloaded file can't alter the store
+                Path tmp = Files.createTempFile(directory, sha256, ".tmp");
+                try {
+                    Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+                    if (HARD_LINKS) {
+                        tmp.toFile().setReadOnly();
+                    }
+                    Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    LOGGER.trace("{} already stored in local cache", sha256);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                evict();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to store {} in local cache", sha256, e);
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (SHA256.matcher(path.getFileName().toString()).matches()) {
+                    entries.add(path);
+                    total += Files.size(path);
+                }
+            }
+        }
+        if (total <= maxSizeBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(ArtifactoryLocalCache::lastUsed));
+        for (Path path : entries) {
+            if (total <= maxSizeBytes) {
+                return;
+            }
+            long size = Files.size(path);
+            Files.deleteIfExists(path);
+            total -= size;
+            LOGGER.trace("Evicted {} from local cache", path);
+        }
+    }
+
+    private static boolean link(Path target, Path entry) {
+        try {
+            Files.createLink(target, entry);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.trace("Cannot hard link {}, copying it", entry, e);
+            return false;
+        }
+    }
+
+    private static long lastUsed(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    static long getHits() {
+        return HITS.get();
+    }
+
+    static long getMisses() {
+        return MISSES.get();
+    }
+}
@@ -0,0 +1,202 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * Manifest stored in place of a cache archive that was uploaded as several segments.
+ * It lists the segments with their offset in the archive, so the archive can be put back together on restore.
+ * The parts of a multipart upload are listed relative to the parts folder of the manifest, so they follow the
+ * manifest when the folder of its job is moved. Deduplicated chunks, shared by every job, are listed by their path.
+ */
+public final class ArtifactoryManifest {
+
+    /**
+     * First key of every manifest. Used to tell a manifest apart from a cache archive
+     */
+    static final String MAGIC = "{\"jobcacherManifest\":";
+
+    /**
+     * Manifests are small, any larger artifact is a cache archive
+     */
+    static final long MAX_SIZE = 4L * 1024L * 1024L;
+
+    /**
+     * Property set to true on manifests and false on cache archives, so that manifests can be found from a listing
+     */
+    static final String PROPERTY = "jobcacher.manifest";
+
+    private static final int VERSION = 1;
+
+    private final long size;
+    private final List<Segment> segments;
+
+    public ArtifactoryManifest(long size, List<Segment> segments) {
+        this.size = size;
+        this.segments = Collections.unmodifiableList(new ArrayList<>(segments));
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Check if a downloaded artifact is a manifest
+     * @param file the downloaded artifact
+     * @return true if the file is a manifest
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isManifest(File file) throws IOException {
+        if (file.length() > MAX_SIZE || file.length() < MAGIC.length()) {
+            return false;
+        }
+        byte[] magic = MAGIC.getBytes(StandardCharsets.UTF_8);
+        byte[] head = new byte[magic.length];
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            if (is.readNBytes(head, 0, head.length) != head.length) {
+                return false;
+            }
+        }
+        return Arrays.equals(magic, head);
+    }
+
+    public static ArtifactoryManifest read(File file) throws IOException {
+        return parse(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse the content of an artifact if it is a manifest
+     * @param content the content of the artifact
+     * @return the manifest, or null if the artifact is a cache archive
+     */
+    public static ArtifactoryManifest readIfManifest(byte[] content) {
+        byte[] magic = MAGIC.getBytes(StandardCharsets.UTF_8);
+        if (content.length < magic.length || !Arrays.equals(magic, 0, magic.length, content, 0, magic.length)) {
+            return null;
+        }
+        return parse(new String(content, StandardCharsets.UTF_8));
+    }
+
+    private static ArtifactoryManifest parse(String content) {
+        JSONObject json = JSONObject.fromObject(content);
+        List<Segment> segments = new ArrayList<>();
+        JSONArray array = json.getJSONArray("segments");
+        for (int i = 0; i < array.size(); i++) {
+            JSONObject segment = array.getJSONObject(i);
+            boolean part = segment.has("part");
+            segments.add(new Segment(
+                    segment.getString(part ? "part" : "path"),
+                    segment.getLong("offset"),
+                    segment.getLong("size"),
+                    segment.optString("sha1", null),
+                    part));
+        }
+        return new ArtifactoryManifest(json.getLong("size"), segments);
+    }
+
+    /**
+     * Serialize the manifest. The magic key is always written first
+     * @return the JSON content of the manifest
+     */
+    public String toJson() {
+        JSONObject json = new JSONObject();
+        json.put("jobcacherManifest", VERSION);
+        json.put("size", size);
+        JSONArray array = new JSONArray();
+        for (Segment segment : segments) {
+            JSONObject s = new JSONObject();
+            s.put(segment.isPart() ? "part" : "path", segment.getPath());
+            s.put("offset", segment.getOffset());
+            s.put("size", segment.getSize());
+            if (segment.getSha1() != null) {
+                s.put("sha1", segment.getSha1());
+            }
+            array.add(s);
+        }
+        json.put("segments", array);
+        return json.toString();
+    }
+
+    /**
+     * A segment of the archive, stored as its own artifact
+     */
+    public static final class Segment {
+        private final String path;
+        private final long offset;
+        private final long size;
+        private final String sha1;
+        private final boolean part;
+
+        public Segment(String path, long offset, long size, String sha1) {
+            this(path, offset, size, sha1, false);
+        }
+
+        private Segment(String path, long offset, long size, String sha1, boolean part) {
+            this.path = path;
+            this.offset = offset;
+            this.size = size;
+            this.sha1 = sha1;
+            this.part = part;
+        }
+
+        /**
+         * Create the segment of a part stored below the parts folder of the manifest
+         * @param path the path of the part, relative to the parts folder
+         * @param offset the offset of the part in the archive
+         * @param size the size of the part
+         * @param sha1 the SHA-1 of the part
+         * @return the segment
+         */
+        public static Segment part(String path, long offset, long size, String sha1) {
+            return new Segment(path, offset, size, sha1, true);
+        }
+
+        /**
+         * @return the path of the segment, relative to the parts folder for a part
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return true if the path is relative to the parts folder of the manifest
+         */
+        public boolean isPart() {
+            return part;
+        }
+
+        /**
+         * Resolve the path of the segment in the repository
+         * @param manifestPath the current path of the manifest
+         * @return the path of the segment
+         */
+        public String resolve(String manifestPath) {
+            return part ? String.format("%s%s/%s", manifestPath, ArtifactoryUploader.PARTS_SUFFIX, path) : path;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha1() {
+            return sha1;
+        }
+    }
+}
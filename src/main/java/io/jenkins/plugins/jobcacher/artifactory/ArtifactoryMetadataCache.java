@@ -0,0 +1,208 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.util.SystemProperties;
+
+/**
+ * JVM wide short-lived cache of item metadata, keyed by server, repository and path.
+ * Concurrent lookups of the same key are coalesced into a single request, and missing items are cached as well
+ * so builds starting together for the same cache key don't all hit Artifactory.
+ */
+public final class ArtifactoryMetadataCache {
+
+    /**
+     * Time to live of an entry. Zero disables the cache
+     */
+    static final long TTL_MS = TimeUnit.SECONDS.toMillis(
+            SystemProperties.getLong(ArtifactoryMetadataCache.class.getName() + ".ttlSeconds", 10L));
+
+    /**
+     * Maximum number of entries
+     */
+    static final int MAX_ENTRIES =
+            SystemProperties.getInteger(ArtifactoryMetadataCache.class.getName() + ".maxEntries", 1000);
+
+    private static final ArtifactoryMetadataCache INSTANCE = new ArtifactoryMetadataCache(TTL_MS, MAX_ENTRIES);
+
+    private final long ttlMs;
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+    private final Map<String, CompletableFuture<ArtifactoryItemInfo>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Bumped on each invalidation, so a lookup started before it doesn't store a stale answer
+     */
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    ArtifactoryMetadataCache(long ttlMs, int maxEntries) {
+        this.ttlMs = ttlMs;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ArtifactoryMetadataCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static ArtifactoryMetadataCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Build the cache key of a path
+     * @param config the Artifactory configuration
+     * @param path the path in the repository
+     * @return the key
+     */
+    static String key(ArtifactoryClient.ArtifactoryConfig config, String path) {
+        return String.format("%s|%s|%s", config.getServerUrl(), config.getRepository(), path);
+    }
+
+    /**
+     * Get the metadata of a key, loading it if missing or expired
+     * @param key the key
+     * @param loader the loader used on miss
+     * @return the metadata, or null if the item doesn't exist
+     * @throws IOException if the metadata cannot be loaded
+     */
+    public ArtifactoryItemInfo get(String key, Loader loader) throws IOException {
+        if (ttlMs <= 0) {
+            return loader.load();
+        }
+        long loadGeneration;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > System.currentTimeMillis()) {
+                    hits.incrementAndGet();
+                    return entry.info;
+                }
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+            loadGeneration = generation;
+        }
+        CompletableFuture<ArtifactoryItemInfo> mine = new CompletableFuture<>();
+        CompletableFuture<ArtifactoryItemInfo> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+        misses.incrementAndGet();
+        try {
+            ArtifactoryItemInfo info = loader.load();
+            synchronized (entries) {
+                if (generation == loadGeneration) {
+                    entries.put(key, new Entry(info, System.currentTimeMillis() + ttlMs));
+                }
+            }
+            mine.complete(info);
+            return info;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static ArtifactoryItemInfo await(CompletableFuture<ArtifactoryItemInfo> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for metadata", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Invalidate a key and every key below it
+     * @param key the key
+     */
+    public void invalidate(String key) {
+        synchronized (entries) {
+            generation++;
+            Iterator<String> it = entries.keySet().iterator();
+            while (it.hasNext()) {
+                String k = it.next();
+                if (k.equals(key) || k.startsWith(key + "/")) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        ArtifactoryItemInfo load() throws IOException;
+    }
+
+    private static final class Entry {
+        private final ArtifactoryItemInfo info;
+        private final long expiresAt;
+
+        private Entry(ArtifactoryItemInfo info, long expiresAt) {
+            this.info = info;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
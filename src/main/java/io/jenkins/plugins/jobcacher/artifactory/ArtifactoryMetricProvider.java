@@ -0,0 +1,48 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import hudson.Extension;
+import java.util.HashMap;
+import java.util.Map;
+import jenkins.metrics.api.MetricProvider;
+
+/**
+ * Publish the transfer metrics of the controller to the Metrics plugin when it is installed.
+ * Operations are aggregated over all jobs, the per job details are served by the JSON endpoint of the storage.
+ */
+@Extension(optional = true)
+public class ArtifactoryMetricProvider extends MetricProvider {
+
+    private static final String PREFIX = "jobcacher.artifactory";
+
+    @Override
+    public MetricSet getMetricSet() {
+        ArtifactoryMetrics metrics = ArtifactoryMetrics.get();
+        Map<String, Metric> gauges = new HashMap<>();
+        gauges.put(MetricRegistry.name(PREFIX, "requests"), (Gauge<Long>) metrics::getRequests);
+        gauges.put(MetricRegistry.name(PREFIX, "uploadedBytes"), (Gauge<Long>) metrics::getUploadedBytes);
+        gauges.put(MetricRegistry.name(PREFIX, "downloadedBytes"), (Gauge<Long>) metrics::getDownloadedBytes);
+        gauges.put(
+                MetricRegistry.name(PREFIX, "operationQueue", "depth"),
+                (Gauge<Integer>) () -> ArtifactoryOperationQueue.get().getDepth());
+        gauges.put(
+                MetricRegistry.name(PREFIX, "operationQueue", "lag"),
+                (Gauge<Long>) () -> ArtifactoryOperationQueue.get().getLagMillis());
+        for (String operation : ArtifactoryMetrics.OPERATIONS) {
+            ArtifactoryMetrics.Stats stats = metrics.getTotal(operation);
+            gauges.put(MetricRegistry.name(PREFIX, operation, "count"), (Gauge<Long>) stats::getCount);
+            gauges.put(MetricRegistry.name(PREFIX, operation, "errors"), (Gauge<Long>) stats::getErrors);
+            gauges.put(MetricRegistry.name(PREFIX, operation, "bytes"), (Gauge<Long>) stats::getBytes);
+            gauges.put(MetricRegistry.name(PREFIX, operation, "throughput"), (Gauge<Long>) stats::getThroughput);
+            gauges.put(MetricRegistry.name(PREFIX, operation, "latency", "mean"), (Gauge<Long>) stats::getMeanMillis);
+            gauges.put(
+                    MetricRegistry.name(PREFIX, operation, "latency", "p95"),
+                    (Gauge<Long>) () -> stats.getPercentileMillis(0.95));
+            gauges.put(MetricRegistry.name(PREFIX, operation, "latency", "max"), (Gauge<Long>) stats::getMaxMillis);
+        }
+        return () -> gauges;
+    }
+}
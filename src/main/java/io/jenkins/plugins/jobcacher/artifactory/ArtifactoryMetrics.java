@@ -0,0 +1,378 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * JVM wide transfer counters. Updated on the hot path, so recording never allocates nor formats.
+ * Cache operations are also tracked per job and operation with their latency, bytes and errors.
+ */
+public final class ArtifactoryMetrics {
+
+    /**
+     * Maximum number of jobs tracked separately. Jobs above it are accounted under {@link #OTHER_JOBS}
+     */
+    static final int MAX_JOBS = SystemProperties.getInteger(ArtifactoryMetrics.class.getName() + ".maxJobs", 1000);
+
+    static final String OTHER_JOBS = "_other";
+
+    // Cache operations of ArtifactoryItemPath
+    public static final String COPY_TO = "copyTo";
+    public static final String COPY_FROM = "copyFrom";
+    public static final String DELETE = "delete";
+
+    // Requests of ArtifactoryClient
+    public static final String CLIENT_UPLOAD = "client.upload";
+    public static final String CLIENT_DEPLOY_BY_CHECKSUM = "client.deployByChecksum";
+    public static final String CLIENT_DOWNLOAD = "client.download";
+    public static final String CLIENT_INFO = "client.info";
+    public static final String CLIENT_LIST = "client.list";
+    public static final String CLIENT_DELETE = "client.delete";
+    public static final String CLIENT_MOVE = "client.move";
+    public static final String CLIENT_COPY = "client.copy";
+
+    static final String[] OPERATIONS = {
+        COPY_TO,
+        COPY_FROM,
+        DELETE,
+        CLIENT_UPLOAD,
+        CLIENT_DEPLOY_BY_CHECKSUM,
+        CLIENT_DOWNLOAD,
+        CLIENT_INFO,
+        CLIENT_LIST,
+        CLIENT_DELETE,
+        CLIENT_MOVE,
+        CLIENT_COPY
+    };
+
+    /**
+     * Upper bounds of the latency histogram buckets, in milliseconds. A last bucket holds everything above
+     */
+    static final long[] LATENCY_BUCKETS_MS = {
+        5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000, 300_000
+    };
+
+    private static final ArtifactoryMetrics INSTANCE = new ArtifactoryMetrics(MAX_JOBS);
+
+    private final LongAdder downloadedBytes = new LongAdder();
+    private final LongAdder downloadNanos = new LongAdder();
+    private final LongAdder uploadedBytes = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder agentChecks = new LongAdder();
+
+    private final int maxJobs;
+    private final Map<String, Map<String, Stats>> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Stats> totals = new ConcurrentHashMap<>();
+
+    ArtifactoryMetrics(int maxJobs) {
+        this.maxJobs = Math.max(1, maxJobs);
+        for (String operation : OPERATIONS) {
+            totals.put(operation, new Stats());
+        }
+    }
+
+    public static ArtifactoryMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record bytes written to disk by a download stream
+     * @param bytes the number of bytes
+     * @param nanos the time spent
+     */
+    public void recordDownload(long bytes, long nanos) {
+        downloadedBytes.add(bytes);
+        downloadNanos.add(nanos);
+    }
+
+    /**
+     * Record bytes sent by an upload since its previous progress callback
+     * @param bytes the number of bytes
+     */
+    public void recordUploadProgress(long bytes) {
+        uploadedBytes.add(bytes);
+    }
+
+    /**
+     * Record an HTTP request sent to Artifactory
+     */
+    public void recordRequest() {
+        requests.increment();
+    }
+
+    /**
+     * Record a metadata check delegated to an agent instead of being sent by this JVM
+     */
+    public void recordAgentCheck() {
+        agentChecks.increment();
+    }
+
+    /**
+     * Record a completed operation
+     * @param job the job the operation was done for, or null if unknown
+     * @param operation the operation
+     * @param bytes the bytes transferred
+     * @param nanos the time spent
+     * @param failed true if the operation failed
+     */
+    public void record(String job, String operation, long bytes, long nanos, boolean failed) {
+        totals.computeIfAbsent(operation, o -> new Stats()).record(bytes, nanos, failed);
+        if (job != null) {
+            jobStats(job).computeIfAbsent(operation, o -> new Stats()).record(bytes, nanos, failed);
+        }
+    }
+
+    /**
+     * Start timing an operation. The returned timer records it when closed
+     * @param job the job the operation is done for, or null if unknown
+     * @param operation the operation
+     * @return the timer
+     */
+    public Timer start(String job, String operation) {
+        return new Timer(this, job, operation);
+    }
+
+    private Map<String, Stats> jobStats(String job) {
+        Map<String, Stats> stats = jobs.get(job);
+        if (stats != null) {
+            return stats;
+        }
+        if (jobs.size() >= maxJobs) {
+            return jobs.computeIfAbsent(OTHER_JOBS, j -> new ConcurrentHashMap<>());
+        }
+        return jobs.computeIfAbsent(job, j -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param operation the operation
+     * @return the statistics of an operation over all jobs
+     */
+    public Stats getTotal(String operation) {
+        return totals.computeIfAbsent(operation, o -> new Stats());
+    }
+
+    /**
+     * @param job the job
+     * @param operation the operation
+     * @return the statistics of an operation for a job, or null if never recorded
+     */
+    public Stats getStats(String job, String operation) {
+        Map<String, Stats> stats = jobs.get(job);
+        return stats != null ? stats.get(operation) : null;
+    }
+
+    public long getUploadedBytes() {
+        return uploadedBytes.sum();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getAgentChecks() {
+        return agentChecks.sum();
+    }
+
+    public long getDownloadedBytes() {
+        return downloadedBytes.sum();
+    }
+
+    /**
+     * @return the average download throughput of the download streams, in bytes per second
+     */
+    public long getDownloadThroughput() {
+        long nanos = downloadNanos.sum();
+        return nanos == 0 ? 0 : downloadedBytes.sum() * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    /**
+     * @return the metrics of this JVM as JSON, jobs and operations sorted by name
+     */
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("requests", getRequests());
+        json.put("agentChecks", getAgentChecks());
+        json.put("uploadedBytes", getUploadedBytes());
+        json.put("downloadedBytes", getDownloadedBytes());
+        json.put("downloadThroughput", getDownloadThroughput());
+        JSONObject operations = new JSONObject();
+        for (Map.Entry<String, Stats> entry : new TreeMap<>(totals).entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                operations.put(entry.getKey(), entry.getValue().toJson());
+            }
+        }
+        json.put("operations", operations);
+        JSONObject jobsJson = new JSONObject();
+        for (Map.Entry<String, Map<String, Stats>> job : new TreeMap<>(jobs).entrySet()) {
+            JSONObject jobJson = new JSONObject();
+            for (Map.Entry<String, Stats> entry : new TreeMap<>(job.getValue()).entrySet()) {
+                jobJson.put(entry.getKey(), entry.getValue().toJson());
+            }
+            jobsJson.put(job.getKey(), jobJson);
+        }
+        json.put("jobs", jobsJson);
+        return json;
+    }
+
+    /**
+     * Count, errors, bytes and latency histogram of an operation
+     */
+    public static final class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+        private final LongAdder[] buckets = new LongAdder[LATENCY_BUCKETS_MS.length + 1];
+
+        Stats() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long bytes, long nanos, boolean failed) {
+            count.increment();
+            if (failed) {
+                errors.increment();
+            }
+            this.bytes.add(bytes);
+            this.nanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            buckets[bucket(TimeUnit.NANOSECONDS.toMillis(nanos))].increment();
+        }
+
+        private static int bucket(long millis) {
+            for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+                if (millis <= LATENCY_BUCKETS_MS[i]) {
+                    return i;
+                }
+            }
+            return LATENCY_BUCKETS_MS.length;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getMeanMillis() {
+            long count = getCount();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos.sum() / count);
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+
+        /**
+         * @return the average throughput of the operation, in bytes per second
+         */
+        public long getThroughput() {
+            long spent = nanos.sum();
+            return spent == 0 ? 0 : getBytes() * TimeUnit.SECONDS.toNanos(1) / spent;
+        }
+
+        /**
+         * Estimate a latency percentile from the histogram
+         * @param quantile the quantile, between 0 and 1
+         * @return the upper bound of the bucket holding the percentile, in milliseconds
+         */
+        public long getPercentileMillis(double quantile) {
+            long[] counts = bucketCounts();
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(LATENCY_BUCKETS_MS[i], getMaxMillis());
+                }
+            }
+            return getMaxMillis();
+        }
+
+        private long[] bucketCounts() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("count", getCount());
+            json.put("errors", getErrors());
+            json.put("bytes", getBytes());
+            json.put("throughput", getThroughput());
+            json.put("meanMillis", getMeanMillis());
+            json.put("p50Millis", getPercentileMillis(0.5));
+            json.put("p95Millis", getPercentileMillis(0.95));
+            json.put("p99Millis", getPercentileMillis(0.99));
+            json.put("maxMillis", getMaxMillis());
+            JSONArray histogram = new JSONArray();
+            long[] counts = bucketCounts();
+            for (int i = 0; i < counts.length; i++) {
+                JSONObject bucket = new JSONObject();
+                bucket.put("le", i < LATENCY_BUCKETS_MS.length ? String.valueOf(LATENCY_BUCKETS_MS[i]) : "+Inf");
+                bucket.put("count", counts[i]);
+                histogram.add(bucket);
+            }
+            json.put("histogram", histogram);
+            return json;
+        }
+    }
+
+    /**
+     * Times an operation. Mark it succeeded before closing it, otherwise it is recorded as failed
+     */
+    public static final class Timer implements AutoCloseable {
+        private final ArtifactoryMetrics metrics;
+        private final String job;
+        private final String operation;
+        private final long start = System.nanoTime();
+        private long bytes;
+        private boolean succeeded;
+
+        private Timer(ArtifactoryMetrics metrics, String job, String operation) {
+            this.metrics = metrics;
+            this.job = job;
+            this.operation = operation;
+        }
+
+        public void succeeded() {
+            succeeded = true;
+        }
+
+        public void succeeded(long bytes) {
+            this.bytes = bytes;
+            succeeded = true;
+        }
+
+        @Override
+        public void close() {
+            metrics.record(job, operation, bytes, System.nanoTime() - start, !succeeded);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Move of a folder tree. Use the move API of Artifactory PRO, and fall back on Artifactory OSS to a move file by file:
+ * each file is deployed at its target by checksum, which is a server side copy, or streamed from its download to its
+ * upload without touching the disk. The source is deleted once every file is copied.
+ */
+final class ArtifactoryMover {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryMover.class);
+
+    /**
+     * Number of files copied in parallel by the fallback
+     */
+    static final int PARALLELISM = SystemProperties.getInteger(ArtifactoryMover.class.getName() + ".parallelism", 4);
+
+    private final ArtifactoryClient client;
+    private final int parallelism;
+    private final ProgressListener listener;
+
+    ArtifactoryMover(ArtifactoryClient client) {
+        this(client, PARALLELISM, ArtifactoryMover::logProgress);
+    }
+
+    ArtifactoryMover(ArtifactoryClient client, int parallelism, ProgressListener listener) {
+        this.client = client;
+        this.parallelism = Math.max(1, parallelism);
+        this.listener = listener;
+    }
+
+    /**
+     * Move a folder and everything below it
+     * @param source the source folder
+     * @param target the target folder
+     * @throws IOException if the folder cannot be moved
+     * @throws InterruptedException if interrupted while waiting for the copies
+     */
+    void move(String source, String target) throws IOException, InterruptedException {
+        if (source.equals(target)) {
+            return;
+        }
+        // The fallback would copy the files into the source, then delete it with the copies
+        if (target.startsWith(source + "/")) {
+            throw new IOException(String.format("Cannot move %s below itself to %s", source, target));
+        }
+        try {
+            client.move(source, target);
+            return;
+        } catch (RuntimeException e) {
+            // Artifactory OSS has no move API
+            LOGGER.debug("Server side move of {} failed, moving file by file: {}", source, e.getMessage());
+        }
+        List<String> files = new ArrayList<>();
+        for (String file : client.list(source)) {
+            // The listing only returns files below the source. Target paths are built from the part below it, so
+            // anything else would be copied to a wrong path
+            if (file.startsWith(source + "/")) {
+                files.add(file);
+            }
+        }
+        copyAll(files, source, target);
+        client.deleteArtifact(source);
+        LOGGER.debug("Moved {} files from {} to {}", files.size(), source, target);
+    }
+
+    private void copyAll(List<String> files, String source, String target) throws IOException, InterruptedException {
+        if (files.isEmpty()) {
+            return;
+        }
+        AtomicInteger done = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, files.size()),
+                new NamingThreadFactory(new DaemonThreadFactory(), "ArtifactoryMover"));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String file : files) {
+                String to = target + file.substring(source.length());
+                futures.add(executor.submit(() -> {
+                    copy(file, to);
+                    listener.onProgress(source, done.incrementAndGet(), files.size());
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(String.format("Failed to move %s to %s", source, target), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void copy(String from, String to) throws IOException {
+        ArtifactoryItemInfo info = client.info(from);
+        if (info == null || !info.isFile()) {
+            throw new FileNotFoundException(String.format("%s not found", from));
+        }
+        // The codec of compressed caches and the marker of manifests must follow them
+        Map<String, String> properties = new HashMap<>();
+        for (String name : List.of(
+                ArtifactoryCodec.CODEC_PROPERTY, ArtifactoryCodec.LEVEL_PROPERTY, ArtifactoryManifest.PROPERTY)) {
+            String value = info.getProperty(name);
+            if (value != null) {
+                properties.put(name, value);
+            }
+        }
+        if (info.getChecksums() != null && client.deployByChecksum(to, info.getChecksums(), properties)) {
+            return;
+        }
+        try (InputStream in = client.downloadArtifact(from)) {
+            client.uploadArtifact(in, info.getSize(), to, properties);
+        }
+    }
+
+    private static void logProgress(String source, int done, int total) {
+        // Log about every tenth of the files
+        if (done == total || done % Math.max(1, total / 10) == 0) {
+            LOGGER.info("Moving {}: {}/{} files copied", source, done, total);
+        }
+    }
+
+    /**
+     * Notified after each file copied by the fallback
+     */
+    @FunctionalInterface
+    interface ProgressListener {
+        void onProgress(String source, int done, int total);
+    }
+}
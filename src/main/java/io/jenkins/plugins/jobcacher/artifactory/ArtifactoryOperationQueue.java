@@ -0,0 +1,408 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Controller queue of the storage operations triggered by item deletions and renames.
+ * Operations run in the background on a bounded number of threads, so deleting or renaming a folder doesn't block
+ * on Artifactory. The queue is persisted in the Jenkins home and resumed after a restart. Pending operations on the
+ * same path are coalesced, and failed operations are retried with an exponential backoff.
+ */
+public final class ArtifactoryOperationQueue {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryOperationQueue.class);
+
+    /**
+     * Maximum number of operations running at the same time
+     */
+    static final int THREADS = SystemProperties.getInteger(ArtifactoryOperationQueue.class.getName() + ".threads", 2);
+
+    /**
+     * Number of attempts of an operation before giving up
+     */
+    static final int MAX_ATTEMPTS =
+            SystemProperties.getInteger(ArtifactoryOperationQueue.class.getName() + ".maxAttempts", 10);
+
+    static final long INITIAL_BACKOFF_MS = TimeUnit.SECONDS.toMillis(1);
+
+    static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private static ArtifactoryOperationQueue instance;
+
+    private final XmlFile file;
+    private final int threads;
+    private final Handler handler;
+    private final ExecutorService executor;
+
+    /**
+     * Pending operations, in submission order. Running operations stay here until they succeed
+     */
+    private final List<Operation> pending = new ArrayList<>();
+
+    /**
+     * Time of the next scheduled pump for the operations waiting for their backoff
+     */
+    private long scheduledPump = Long.MAX_VALUE;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+
+    ArtifactoryOperationQueue(File file, int threads, Handler handler) {
+        this.file = new XmlFile(file);
+        this.threads = Math.max(1, threads);
+        this.handler = handler;
+        this.executor = Executors.newFixedThreadPool(
+                this.threads, new NamingThreadFactory(new DaemonThreadFactory(), "ArtifactoryOperationQueue"));
+    }
+
+    public static synchronized ArtifactoryOperationQueue get() {
+        if (instance == null) {
+            instance = new ArtifactoryOperationQueue(
+                    new File(Jenkins.get().getRootDir(), ArtifactoryOperationQueue.class.getName() + ".xml"),
+                    THREADS,
+                    ArtifactoryOperationQueue::runOnGlobalStorage);
+            instance.load();
+        }
+        return instance;
+    }
+
+    /**
+     * Resume the operations left by a previous run once items are loaded
+     */
+    @Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void resume() {
+        get().pump();
+    }
+
+    /**
+     * Queue the deletion of a path and everything below it
+     * @param path the path in the repository
+     */
+    public void delete(String path) {
+        synchronized (pending) {
+            Iterator<Operation> it = pending.iterator();
+            List<Operation> replaced = new ArrayList<>();
+            while (it.hasNext()) {
+                Operation op = it.next();
+                if (op.running) {
+                    continue;
+                }
+                if (isSameOrBelow(op.path, path)) {
+                    // Superseded by the deletion
+                    it.remove();
+                } else if (op.type == Type.MOVE && isSameOrBelow(op.target, path)) {
+                    // Moved then deleted. Delete the source instead of moving it
+                    it.remove();
+                    replaced.add(new Operation(Type.DELETE, op.path, null, op.enqueuedAt));
+                }
+            }
+            pending.addAll(replaced);
+            pending.add(new Operation(Type.DELETE, path, null, System.currentTimeMillis()));
+            save();
+        }
+        pump();
+    }
+
+    /**
+     * Queue the move of a path and everything below it
+     * @param path the source path in the repository
+     * @param target the target path in the repository
+     */
+    public void move(String path, String target) {
+        if (path.equals(target)) {
+            return;
+        }
+        synchronized (pending) {
+            boolean coalesced = false;
+            Iterator<Operation> it = pending.iterator();
+            while (it.hasNext()) {
+                Operation op = it.next();
+                if (!op.running && op.type == Type.MOVE && op.target.equals(path)) {
+                    // Renamed twice. Move the original path straight to its final location, or nowhere if renamed back
+                    if (op.path.equals(target)) {
+                        it.remove();
+                    } else {
+                        op.target = target;
+                    }
+                    coalesced = true;
+                }
+            }
+            if (!coalesced) {
+                pending.removeIf(op -> !op.running
+                        && op.type == Type.MOVE
+                        && op.path.equals(path)
+                        && op.target.equals(target));
+                pending.add(new Operation(Type.MOVE, path, target, System.currentTimeMillis()));
+            }
+            save();
+        }
+        pump();
+    }
+
+    /**
+     * Start the operations that are due and don't conflict with a running one
+     */
+    void pump() {
+        List<Operation> started = new ArrayList<>();
+        long delay = -1;
+        synchronized (pending) {
+            long nextAttempt = Long.MAX_VALUE;
+            long now = System.currentTimeMillis();
+            int running = (int) pending.stream().filter(op -> op.running).count();
+            for (Operation op : pending) {
+                if (running >= threads) {
+                    break;
+                }
+                if (op.running || conflictsWithEarlier(op)) {
+                    continue;
+                }
+                if (op.notBefore > now) {
+                    nextAttempt = Math.min(nextAttempt, op.notBefore);
+                    continue;
+                }
+                op.running = true;
+                running++;
+                started.add(op);
+            }
+            if (nextAttempt < scheduledPump) {
+                scheduledPump = nextAttempt;
+                delay = nextAttempt - now;
+            }
+        }
+        for (Operation op : started) {
+            executor.execute(() -> run(op));
+        }
+        if (delay >= 0) {
+            Timer.get().schedule(this::scheduledPump, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scheduledPump() {
+        synchronized (pending) {
+            scheduledPump = Long.MAX_VALUE;
+        }
+        pump();
+    }
+
+    /**
+     * Operations on overlapping paths run in submission order
+     */
+    private boolean conflictsWithEarlier(Operation op) {
+        for (Operation other : pending) {
+            if (other == op) {
+                return false;
+            }
+            if (other.overlaps(op)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void run(Operation op) {
+        try {
+            handler.run(op);
+            synchronized (pending) {
+                pending.remove(op);
+                save();
+            }
+            completed.incrementAndGet();
+            LOGGER.debug("Completed {}", op);
+        } catch (Exception e) {
+            synchronized (pending) {
+                op.running = false;
+                op.attempts++;
+                if (op.attempts >= MAX_ATTEMPTS) {
+                    pending.remove(op);
+                    abandoned.incrementAndGet();
+                    LOGGER.error("Giving up {} after {} attempts", op, op.attempts, e);
+                } else {
+                    op.notBefore = System.currentTimeMillis() + backoff(op.attempts);
+                    retried.incrementAndGet();
+                    LOGGER.warn("Failed {} (attempt {}/{}). Retrying later", op, op.attempts, MAX_ATTEMPTS, e);
+                }
+                save();
+            }
+        }
+        pump();
+    }
+
+    static long backoff(int attempts) {
+        return Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempts - 1, 20));
+    }
+
+    private static boolean isSameOrBelow(String path, String parent) {
+        return path.equals(parent) || path.startsWith(parent + "/");
+    }
+
+    private static void runOnGlobalStorage(Operation op) throws Exception {
+        ArtifactoryItemStorage storage = ArtifactoryItemStorage.lookupGlobalStorage();
+        if (storage == null) {
+            LOGGER.debug("Artifactory storage is not configured anymore. Dropping {}", op);
+            return;
+        }
+        if (op.type == Type.DELETE) {
+            storage.deleteStoragePath(op.path);
+        } else {
+            storage.moveStoragePath(op.path, op.target);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            List<Operation> loaded = (List<Operation>) file.read();
+            synchronized (pending) {
+                pending.clear();
+                for (Operation op : loaded) {
+                    op.running = false;
+                    pending.add(op);
+                }
+            }
+            LOGGER.debug("Loaded {} pending Artifactory operations", loaded.size());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to load pending Artifactory operations from {}", file, e);
+        }
+    }
+
+    /**
+     * Must be called holding the lock on the pending operations
+     */
+    private void save() {
+        try {
+            file.write(new ArrayList<>(pending));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save pending Artifactory operations to {}", file, e);
+        }
+    }
+
+    /**
+     * @return the number of pending operations, running ones included
+     */
+    public int getDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return the age of the oldest pending operation, in milliseconds
+     */
+    public long getLagMillis() {
+        synchronized (pending) {
+            long now = System.currentTimeMillis();
+            return pending.stream().mapToLong(op -> now - op.enqueuedAt).max().orElse(0);
+        }
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public long getAbandoned() {
+        return abandoned.get();
+    }
+
+    List<Operation> getPending() {
+        synchronized (pending) {
+            return new ArrayList<>(pending);
+        }
+    }
+
+    /**
+     * Run an operation, throwing to have it retried
+     */
+    @FunctionalInterface
+    interface Handler {
+        void run(Operation op) throws Exception;
+    }
+
+    enum Type {
+        DELETE,
+        MOVE
+    }
+
+    /**
+     * A queued operation. Persisted with XStream
+     */
+    static final class Operation {
+        private final Type type;
+        private final String path;
+        private String target;
+        private final long enqueuedAt;
+        private int attempts;
+        private long notBefore;
+        private transient boolean running;
+
+        Operation(Type type, String path, String target, long enqueuedAt) {
+            this.type = type;
+            this.path = path;
+            this.target = target;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        String getTarget() {
+            return target;
+        }
+
+        int getAttempts() {
+            return attempts;
+        }
+
+        private boolean overlaps(Operation other) {
+            for (String mine : paths()) {
+                for (String theirs : other.paths()) {
+                    if (isSameOrBelow(mine, theirs) || isSameOrBelow(theirs, mine)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private List<String> paths() {
+            return target == null ? List.of(path) : List.of(path, target);
+        }
+
+        @Override
+        public String toString() {
+            return type == Type.DELETE
+                    ? String.format("deletion of %s", path)
+                    : String.format("move of %s to %s", path, target);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spread requests evenly to stay under a number of requests per second. Shared by the threads of an operation
+ */
+final class ArtifactoryRateLimiter {
+
+    private final long intervalNanos;
+    private long next;
+
+    /**
+     * @param permitsPerSecond the maximum number of requests per second. Zero or less disables the limit
+     */
+    ArtifactoryRateLimiter(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+        this.next = System.nanoTime();
+    }
+
+    /**
+     * Wait until a request can be sent
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, next);
+            next = slot + intervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Eviction of the caches stored below the prefix. Caches are found with a single paginated search, then evicted when
+ * unused or too old, above the size budget of their job or of the whole prefix, or when their job doesn't exist
+ * anymore. Deletions run in batches under a request rate limit, and can be only reported with a dry run.
+ * Deduplicated chunks no longer listed by the manifest of any remaining cache are then deleted too.
+ */
+final class ArtifactoryRetention {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryRetention.class);
+
+    /**
+     * Maximum number of delete requests per second
+     */
+    static final double DELETES_PER_SECOND =
+            SystemProperties.getInteger(ArtifactoryRetention.class.getName() + ".deletesPerSecond", 10);
+
+    /**
+     * Number of caches deleted between two progress reports
+     */
+    static final int BATCH_SIZE = SystemProperties.getInteger(ArtifactoryRetention.class.getName() + ".batchSize", 100);
+
+    /**
+     * Age under which unused chunks are kept, as they may belong to a cache being saved
+     */
+    static final long CHUNK_GRACE_MS = TimeUnit.DAYS.toMillis(1);
+
+    private static volatile Report lastReport;
+
+    private final ArtifactoryClient client;
+    private final String root;
+    private final Policy policy;
+    private final Function<String, String> jobOf;
+
+    /**
+     * @param client the client
+     * @param root the prefix of the caches
+     * @param policy the eviction rules
+     * @param jobOf the full name of the job owning a cache folder relative to the prefix, or null if none
+     */
+    ArtifactoryRetention(ArtifactoryClient client, String root, Policy policy, Function<String, String> jobOf) {
+        this.client = client;
+        this.root = root;
+        this.policy = policy;
+        this.jobOf = jobOf;
+    }
+
+    /**
+     * Find and evict the caches
+     * @param log the log of the run
+     * @return the report of the run
+     * @throws IOException if the caches cannot be listed
+     * @throws InterruptedException if interrupted while deleting
+     */
+    Report run(PrintStream log) throws IOException, InterruptedException {
+        List<Entry> entries;
+        try (Stream<ArtifactoryItemInfo> files = client.listFiles(
+                root,
+                ArtifactoryClient.LIST_PAGE_SIZE,
+                EnumSet.of(
+                        ArtifactoryClient.ListField.SIZE,
+                        ArtifactoryClient.ListField.MODIFIED,
+                        ArtifactoryClient.ListField.DOWNLOADED,
+                        ArtifactoryClient.ListField.PROPERTIES))) {
+            entries = group(root, files);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        List<Entry> evicted = select(entries, System.currentTimeMillis());
+        Report report = new Report(policy.dryRun, entries.size(), sizeOf(entries));
+        log.printf(
+                "%s %d of %d caches below %s%n",
+                policy.dryRun ? "Would evict" : "Evicting",
+                evicted.size(),
+                entries.size(),
+                root);
+        ArtifactoryRateLimiter limiter = new ArtifactoryRateLimiter(DELETES_PER_SECOND);
+        for (int i = 0; i < evicted.size(); i++) {
+            Entry entry = evicted.get(i);
+            if (policy.dryRun) {
+                log.printf("Would evict %s (%d bytes): %s%n", entry.path, entry.size, entry.reason);
+                report.evicted(entry);
+                continue;
+            }
+            try {
+                limiter.acquire();
+                client.deleteArtifact(entry.path);
+                if (entry.parts) {
+                    limiter.acquire();
+                    client.deleteArtifact(entry.path + ArtifactoryUploader.PARTS_SUFFIX);
+                }
+                report.evicted(entry);
+                LOGGER.debug("Evicted {} ({} bytes): {}", entry.path, entry.size, entry.reason);
+            } catch (RuntimeException e) {
+                report.failed++;
+                entry.failed = true;
+                LOGGER.warn("Failed to evict {}", entry.path, e);
+            }
+            if ((i + 1) % BATCH_SIZE == 0) {
+                log.printf("Evicted %d/%d caches, %d bytes reclaimed%n", i + 1, evicted.size(), report.reclaimedBytes);
+            }
+        }
+        List<Entry> remaining = new ArrayList<>(entries);
+        // Caches that failed to be evicted keep their chunks
+        remaining.removeIf(entry -> entry.reason != null && !entry.failed);
+        collectChunks(log, remaining, report, limiter);
+        log.println(report);
+        lastReport = report;
+        return report;
+    }
+
+    /**
+     * Delete the deduplicated chunks that no remaining cache lists in its manifest. A save running meanwhile deploys
+     * the chunks it reuses again, so each chunk is checked once more right before it is deleted
+     */
+    private void collectChunks(PrintStream log, List<Entry> remaining, Report report, ArtifactoryRateLimiter limiter)
+            throws IOException, InterruptedException {
+        String chunkRoot = root + "/" + ArtifactoryItemStorage.CHUNKS_FOLDER;
+        List<ArtifactoryItemInfo> chunks;
+        try (Stream<ArtifactoryItemInfo> files = client.listFiles(
+                chunkRoot,
+                ArtifactoryClient.LIST_PAGE_SIZE,
+                EnumSet.of(
+                        ArtifactoryClient.ListField.SIZE,
+                        ArtifactoryClient.ListField.MODIFIED,
+                        ArtifactoryClient.ListField.UPDATED))) {
+            chunks = files.collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (chunks.isEmpty()) {
+            return;
+        }
+        // Any manifest that cannot be read could reference any chunk, so nothing is collected then.
+        // Caches saved before manifests were marked are read as long as they may be one
+        Set<String> referenced = new HashSet<>();
+        for (Entry entry : remaining) {
+            if (entry.parts || entry.size > ArtifactoryManifest.MAX_SIZE || Boolean.FALSE.equals(entry.manifest)) {
+                continue;
+            }
+            byte[] content;
+            // Reading a manifest is not a use of its cache, so its unused time is left as is
+            try (InputStream is = client.downloadUntracked(entry.path)) {
+                content = is.readAllBytes();
+            }
+            ArtifactoryManifest manifest = ArtifactoryManifest.readIfManifest(content);
+            if (manifest != null) {
+                manifest.getSegments().forEach(segment -> referenced.add(segment.resolve(entry.path)));
+            }
+        }
+        long deadline = System.currentTimeMillis() - CHUNK_GRACE_MS;
+        for (ArtifactoryItemInfo chunk : chunks) {
+            if (referenced.contains(chunk.getPath()) || chunk.getLastModified() >= deadline) {
+                continue;
+            }
+            if (!policy.dryRun) {
+                try {
+                    limiter.acquire();
+                    // Reused by a save that started after the manifests were read
+                    client.invalidate(chunk.getPath());
+                    ArtifactoryItemInfo current = client.info(chunk.getPath());
+                    if (current == null || current.getLastModified() >= deadline) {
+                        continue;
+                    }
+                    client.deleteArtifact(chunk.getPath());
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to delete unused chunk {}", chunk.getPath(), e);
+                    continue;
+                }
+            }
+            report.chunks++;
+            report.chunkBytes += chunk.getSize();
+        }
+        log.printf(
+                "%s %d of %d unused chunks (%d bytes)%n",
+                policy.dryRun ? "Would delete" : "Deleted",
+                report.chunks,
+                chunks.size(),
+                report.chunkBytes);
+    }
+
+    /**
+     * Group the files of a listing into caches. The parts of a multipart upload belong to their manifest, and
+     * internal folders (starting with a dot) are ignored
+     * @param root the listed folder
+     * @param files the files below it
+     * @return the caches
+     */
+    static List<Entry> group(String root, Stream<ArtifactoryItemInfo> files) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        List<ArtifactoryItemInfo> parts = new ArrayList<>();
+        files.forEach(file -> {
+            if (!file.getPath().startsWith(root + "/")) {
+                return;
+            }
+            String relative = file.getPath().substring(root.length() + 1);
+            int slash = relative.lastIndexOf('/');
+            if (slash < 0 || relative.startsWith(".") || relative.contains("/.")) {
+                return;
+            }
+            if (relative.contains(ArtifactoryUploader.PARTS_SUFFIX + "/")) {
+                parts.add(file);
+                return;
+            }
+            Entry entry = new Entry(file.getPath(), relative.substring(0, slash));
+            entry.size = file.getSize();
+            entry.modified = file.getLastModified();
+            entry.downloaded = file.getLastDownloaded();
+            String manifest = file.getProperty(ArtifactoryManifest.PROPERTY);
+            entry.manifest = manifest != null ? Boolean.valueOf(manifest) : null;
+            entries.put(entry.path, entry);
+        });
+        for (ArtifactoryItemInfo part : parts) {
+            String path = part.getPath();
+            Entry owner = entries.get(path.substring(0, path.indexOf(ArtifactoryUploader.PARTS_SUFFIX + "/")));
+            // Parts without manifest belong to an upload in progress
+            if (owner != null) {
+                owner.parts = true;
+                owner.size += part.getSize();
+                owner.modified = Math.max(owner.modified, part.getLastModified());
+            }
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Select the caches to evict
+     * @param entries the caches
+     * @param now the current time
+     * @return the caches to evict, with the reason of their eviction
+     */
+    List<Entry> select(List<Entry> entries, long now) {
+        List<Entry> evicted = new ArrayList<>();
+        List<Entry> kept = new ArrayList<>();
+        Map<String, Optional<String>> owners = new HashMap<>();
+        for (Entry entry : entries) {
+            // Caches of a job saved in several folders below it share its budget
+            Optional<String> owner =
+                    owners.computeIfAbsent(entry.folder, folder -> Optional.ofNullable(jobOf.apply(folder)));
+            entry.job = owner.orElse(entry.folder);
+            String reason = null;
+            if (policy.orphans && !owner.isPresent()) {
+                reason = "job doesn't exist";
+            } else if (policy.maxAgeMs > 0 && entry.modified < now - policy.maxAgeMs) {
+                reason = "too old";
+            } else if (policy.maxUnusedMs > 0 && entry.lastUsed() < now - policy.maxUnusedMs) {
+                reason = "unused";
+            }
+            if (reason != null) {
+                evicted.add(entry.evict(reason));
+            } else {
+                kept.add(entry);
+            }
+        }
+        // Budgets keep the most recently used caches
+        kept.sort(Comparator.comparingLong(Entry::lastUsed).reversed());
+        if (policy.maxJobSizeBytes > 0) {
+            Map<String, Long> jobSizes = new HashMap<>();
+            List<Entry> underBudget = new ArrayList<>();
+            for (Entry entry : kept) {
+                long size = jobSizes.merge(entry.job, entry.size, Long::sum);
+                if (size > policy.maxJobSizeBytes) {
+                    evicted.add(entry.evict("above job size budget"));
+                } else {
+                    underBudget.add(entry);
+                }
+            }
+            kept = underBudget;
+        }
+        if (policy.maxTotalSizeBytes > 0) {
+            long total = 0;
+            for (Entry entry : kept) {
+                total += entry.size;
+                if (total > policy.maxTotalSizeBytes) {
+                    evicted.add(entry.evict("above total size budget"));
+                }
+            }
+        }
+        return evicted;
+    }
+
+    private static long sizeOf(List<Entry> entries) {
+        return entries.stream().mapToLong(e -> e.size).sum();
+    }
+
+    /**
+     * @return the report of the last run of this JVM, or null
+     */
+    static Report getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Eviction rules. A zero limit disables its rule
+     */
+    static final class Policy {
+        final long maxAgeMs;
+        final long maxUnusedMs;
+        final long maxJobSizeBytes;
+        final long maxTotalSizeBytes;
+        final boolean orphans;
+        final boolean dryRun;
+
+        Policy(
+                long maxAgeMs,
+                long maxUnusedMs,
+                long maxJobSizeBytes,
+                long maxTotalSizeBytes,
+                boolean orphans,
+                boolean dryRun) {
+            this.maxAgeMs = maxAgeMs;
+            this.maxUnusedMs = maxUnusedMs;
+            this.maxJobSizeBytes = maxJobSizeBytes;
+            this.maxTotalSizeBytes = maxTotalSizeBytes;
+            this.orphans = orphans;
+            this.dryRun = dryRun;
+        }
+
+        boolean isEnabled() {
+            return maxAgeMs > 0 || maxUnusedMs > 0 || maxJobSizeBytes > 0 || maxTotalSizeBytes > 0 || orphans;
+        }
+    }
+
+    /**
+     * A cache, with the parts of its multipart upload
+     */
+    static final class Entry {
+        final String path;
+        // Relative to the prefix
+        final String folder;
+        String job;
+        long size;
+        long modified;
+        long downloaded;
+        boolean parts;
+        // Null when saved before manifests were marked
+        Boolean manifest;
+        String reason;
+        boolean failed;
+
+        Entry(String path, String folder) {
+            this.path = path;
+            this.folder = folder;
+        }
+
+        long lastUsed() {
+            return Math.max(modified, downloaded);
+        }
+
+        private Entry evict(String reason) {
+            this.reason = reason;
+            return this;
+        }
+    }
+
+    /**
+     * Outcome of a run
+     */
+    static final class Report {
+        final boolean dryRun;
+        final int caches;
+        final long totalBytes;
+        int evicted;
+        int failed;
+        long reclaimedBytes;
+        int chunks;
+        long chunkBytes;
+        final long time = System.currentTimeMillis();
+
+        Report(boolean dryRun, int caches, long totalBytes) {
+            this.dryRun = dryRun;
+            this.caches = caches;
+            this.totalBytes = totalBytes;
+        }
+
+        private void evicted(Entry entry) {
+            evicted++;
+            reclaimedBytes += entry.size;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("time", time);
+            json.put("dryRun", dryRun);
+            json.put("caches", caches);
+            json.put("totalBytes", totalBytes);
+            json.put("evicted", evicted);
+            json.put("failed", failed);
+            json.put("reclaimedBytes", reclaimedBytes);
+            json.put("chunks", chunks);
+            json.put("chunkBytes", chunkBytes);
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s %d of %d caches (%d failed), %s %d of %d bytes",
+                    dryRun ? "Would have evicted" : "Evicted",
+                    evicted,
+                    caches,
+                    failed,
+                    dryRun ? "would have reclaimed" : "reclaimed",
+                    reclaimedBytes,
+                    totalBytes);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import java.util.concurrent.TimeUnit;
+import jenkins.util.SystemProperties;
+
+/**
+ * Periodically evict the caches below the prefix according to the retention settings of the storage
+ */
+@Extension
+public class ArtifactoryRetentionWork extends AsyncPeriodicWork {
+
+    /**
+     * Time between two runs
+     */
+    static final long RECURRENCE_HOURS =
+            SystemProperties.getLong(ArtifactoryRetentionWork.class.getName() + ".recurrenceHours", 24L);
+
+    public ArtifactoryRetentionWork() {
+        super("Artifactory cache retention");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.HOURS.toMillis(Math.max(1, RECURRENCE_HOURS));
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws InterruptedException {
+        ArtifactoryItemStorage storage = ArtifactoryItemStorage.lookupGlobalStorage();
+        if (storage == null) {
+            return;
+        }
+        try {
+            ArtifactoryRetention.Report report = storage.applyRetention(listener.getLogger());
+            if (report != null) {
+                ArtifactoryRetention.LOGGER.info("Artifactory cache retention: {}", report);
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            listener.error("Failed to apply the cache retention: " + e.getMessage());
+            ArtifactoryRetention.LOGGER.warn("Failed to apply the cache retention", e);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.util.SystemProperties;
+
+/**
+ * Controller side coordination of the saves of a same cache, keyed by server, repository and path.
+ * A single save of a key uploads at a time. Saves arriving meanwhile wait, and when the upload ends only the newest
+ * of them proceeds, the older ones being superseded. A save whose content is the one last uploaded for the key is
+ * skipped.
+ */
+public final class ArtifactorySaveCoordinator {
+
+    /**
+     * Maximum time a save waits for the upload in flight, after which it uploads anyway
+     */
+    static final long MAX_WAIT_MS = TimeUnit.MINUTES.toMillis(
+            SystemProperties.getLong(ArtifactorySaveCoordinator.class.getName() + ".maxWaitMinutes", 30L));
+
+    /**
+     * Maximum number of keys whose last uploaded content is remembered
+     */
+    static final int MAX_KEYS =
+            SystemProperties.getInteger(ArtifactorySaveCoordinator.class.getName() + ".maxKeys", 10000);
+
+    private static final ArtifactorySaveCoordinator INSTANCE = new ArtifactorySaveCoordinator(MAX_WAIT_MS, MAX_KEYS);
+
+    private final long maxWaitMs;
+    private final Map<String, Slot> slots = new HashMap<>();
+    private final Map<String, String> uploaded;
+    private long sequence;
+
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+
+    ArtifactorySaveCoordinator(long maxWaitMs, int maxKeys) {
+        this.maxWaitMs = maxWaitMs;
+        int max = Math.max(1, maxKeys);
+        this.uploaded = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > max;
+            }
+        };
+    }
+
+    public static ArtifactorySaveCoordinator get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Wait for the turn of a save
+     * @param key the cache key
+     * @return the lease to upload, or null if a newer save of the same key arrived while waiting
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Lease acquire(String key) throws InterruptedException {
+        synchronized (this) {
+            Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+            long mine = ++sequence;
+            slot.newest = mine;
+            slot.users++;
+            // Older saves waiting for the same key are superseded
+            notifyAll();
+            try {
+                if (slot.uploading) {
+                    waited.incrementAndGet();
+                }
+                long deadline = System.currentTimeMillis() + maxWaitMs;
+                while (slot.uploading && slot.newest == mine) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        // The upload in flight seems stuck, upload anyway
+                        break;
+                    }
+                    wait(remaining);
+                }
+                if (slot.newest != mine) {
+                    superseded.incrementAndGet();
+                    return null;
+                }
+                slot.uploading = true;
+                slot.users++;
+                return new Lease(key, slot);
+            } finally {
+                release(key, slot);
+            }
+        }
+    }
+
+    /**
+     * Forget the content uploaded for a key, when its cache is deleted
+     * @param key the cache key
+     */
+    synchronized void forget(String key) {
+        uploaded.remove(key);
+    }
+
+    private void release(String key, Slot slot) {
+        if (--slot.users == 0) {
+            slots.remove(key);
+        }
+    }
+
+    public long getSaved() {
+        return saved.get();
+    }
+
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+
+    public long getSuperseded() {
+        return superseded.get();
+    }
+
+    public long getWaited() {
+        return waited.get();
+    }
+
+    /**
+     * Saves waiting or uploading, per key
+     */
+    private static final class Slot {
+        private boolean uploading;
+        private long newest;
+        private int users;
+    }
+
+    /**
+     * Turn of a save. Must be closed once the save is done
+     */
+    final class Lease implements AutoCloseable {
+        private final String key;
+        private final Slot slot;
+        private boolean closed;
+
+        private Lease(String key, Slot slot) {
+            this.key = key;
+            this.slot = slot;
+        }
+
+        /**
+         * @param hash the hash of the content to save
+         * @return true if this content is the one last uploaded for the key
+         */
+        boolean isUnchanged(String hash) {
+            synchronized (ArtifactorySaveCoordinator.this) {
+                return hash != null && hash.equals(uploaded.get(key));
+            }
+        }
+
+        /**
+         * @return the hash of the content last uploaded for the key, null if unknown
+         */
+        String getUploaded() {
+            synchronized (ArtifactorySaveCoordinator.this) {
+                return uploaded.get(key);
+            }
+        }
+
+        /**
+         * Record a save skipped as its content was already uploaded
+         */
+        void skipped() {
+            unchanged.incrementAndGet();
+        }
+
+        /**
+         * Record the content uploaded for the key
+         * @param hash the hash of the uploaded content
+         */
+        void saved(String hash) {
+            synchronized (ArtifactorySaveCoordinator.this) {
+                uploaded.put(key, hash);
+                saved.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (ArtifactorySaveCoordinator.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                slot.uploading = false;
+                release(key, slot);
+                ArtifactorySaveCoordinator.this.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import java.util.concurrent.TimeUnit;
+import jenkins.util.SystemProperties;
+
+/**
+ * Periodically delete the staged uploads left by saves interrupted before moving them to their path
+ */
+@Extension
+public class ArtifactoryStagingSweeper extends AsyncPeriodicWork {
+
+    /**
+     * Time between two runs
+     */
+    static final long RECURRENCE_HOURS =
+            SystemProperties.getLong(ArtifactoryStagingSweeper.class.getName() + ".recurrenceHours", 1L);
+
+    /**
+     * Age above which a staged upload is abandoned. Must be longer than the slowest save
+     */
+    static final long MAX_AGE_HOURS =
+            SystemProperties.getLong(ArtifactoryStagingSweeper.class.getName() + ".maxAgeHours", 6L);
+
+    public ArtifactoryStagingSweeper() {
+        super("Artifactory staging sweeper");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.HOURS.toMillis(Math.max(1, RECURRENCE_HOURS));
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws InterruptedException {
+        ArtifactoryItemStorage storage = ArtifactoryItemStorage.lookupGlobalStorage();
+        if (storage == null) {
+            return;
+        }
+        try {
+            int deleted = storage.sweepStaging(listener.getLogger(), TimeUnit.HOURS.toMillis(MAX_AGE_HOURS));
+            if (deleted > 0) {
+                ArtifactoryItemStorage.LOGGER.info("Deleted {} abandoned staged uploads", deleted);
+            }
+        } catch (Exception e) {
+            listener.error("Failed to sweep the staged uploads: " + e.getMessage());
+            ArtifactoryItemStorage.LOGGER.warn("Failed to sweep the staged uploads", e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Tuning of the transfers done by the agents. Sent with each agent callable
+ */
+public final class ArtifactoryTransferSettings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_DOWNLOAD_CHUNK_SIZE_MB = 64;
+    public static final int DEFAULT_DOWNLOAD_PARALLELISM = 1;
+    public static final int DEFAULT_MULTIPART_THRESHOLD_MB = 0;
+    public static final int DEFAULT_UPLOAD_PART_SIZE_MB = 64;
+    public static final int DEFAULT_UPLOAD_PARALLELISM = 4;
+    public static final int DEFAULT_LOCAL_CACHE_MAX_SIZE_MB = 10240;
+    public static final int DEFAULT_DOWNLOAD_BUFFER_SIZE_KB = 1024;
+    public static final int DEFAULT_DELETE_PARALLELISM = 1;
+    public static final int DEFAULT_DELETE_REQUESTS_PER_SECOND = 20;
+    public static final int DEFAULT_CHUNK_SIZE_KB = 1024;
+
+    private static final long MB = 1024L * 1024L;
+
+    private int downloadChunkSizeMb = DEFAULT_DOWNLOAD_CHUNK_SIZE_MB;
+    private int downloadParallelism = DEFAULT_DOWNLOAD_PARALLELISM;
+    private int multipartThresholdMb = DEFAULT_MULTIPART_THRESHOLD_MB;
+    private int uploadPartSizeMb = DEFAULT_UPLOAD_PART_SIZE_MB;
+    private int uploadParallelism = DEFAULT_UPLOAD_PARALLELISM;
+    private String localCacheDirectory;
+    private int localCacheMaxSizeMb = DEFAULT_LOCAL_CACHE_MAX_SIZE_MB;
+    private int downloadBufferSizeKb = DEFAULT_DOWNLOAD_BUFFER_SIZE_KB;
+    private int deleteParallelism = DEFAULT_DELETE_PARALLELISM;
+    private int deleteRequestsPerSecond = DEFAULT_DELETE_REQUESTS_PER_SECOND;
+    private ArtifactoryCodec codec = ArtifactoryCodec.NONE;
+    private int codecLevel;
+    private String chunkRoot;
+    private String stagingRoot;
+    private int chunkSizeKb = DEFAULT_CHUNK_SIZE_KB;
+    private List<String> restoreKeys = List.of();
+    private boolean agentMetadata;
+
+    public int getDownloadChunkSizeMb() {
+        return downloadChunkSizeMb;
+    }
+
+    public void setDownloadChunkSizeMb(int downloadChunkSizeMb) {
+        this.downloadChunkSizeMb = downloadChunkSizeMb > 0 ? downloadChunkSizeMb : DEFAULT_DOWNLOAD_CHUNK_SIZE_MB;
+    }
+
+    public long getDownloadChunkSizeBytes() {
+        return downloadChunkSizeMb * MB;
+    }
+
+    public int getDownloadParallelism() {
+        return downloadParallelism;
+    }
+
+    public void setDownloadParallelism(int downloadParallelism) {
+        this.downloadParallelism = downloadParallelism > 0 ? downloadParallelism : DEFAULT_DOWNLOAD_PARALLELISM;
+    }
+
+    public int getMultipartThresholdMb() {
+        return multipartThresholdMb;
+    }
+
+    /**
+     * Archives above this size are uploaded in parts. Zero disables multipart uploads
+     * @param multipartThresholdMb the threshold in megabytes
+     */
+    public void setMultipartThresholdMb(int multipartThresholdMb) {
+        this.multipartThresholdMb = Math.max(0, multipartThresholdMb);
+    }
+
+    public long getMultipartThresholdBytes() {
+        return multipartThresholdMb * MB;
+    }
+
+    public int getUploadPartSizeMb() {
+        return uploadPartSizeMb;
+    }
+
+    public void setUploadPartSizeMb(int uploadPartSizeMb) {
+        this.uploadPartSizeMb = uploadPartSizeMb > 0 ? uploadPartSizeMb : DEFAULT_UPLOAD_PART_SIZE_MB;
+    }
+
+    public long getUploadPartSizeBytes() {
+        return uploadPartSizeMb * MB;
+    }
+
+    public int getUploadParallelism() {
+        return uploadParallelism;
+    }
+
+    public void setUploadParallelism(int uploadParallelism) {
+        this.uploadParallelism = uploadParallelism > 0 ? uploadParallelism : DEFAULT_UPLOAD_PARALLELISM;
+    }
+
+    /**
+     * @return the directory of the agent local archive store, or null if disabled
+     */
+    public String getLocalCacheDirectory() {
+        return localCacheDirectory;
+    }
+
+    public void setLocalCacheDirectory(String localCacheDirectory) {
+        this.localCacheDirectory =
+                localCacheDirectory == null || localCacheDirectory.isBlank() ? null : localCacheDirectory.trim();
+    }
+
+    public int getLocalCacheMaxSizeMb() {
+        return localCacheMaxSizeMb;
+    }
+
+    public void setLocalCacheMaxSizeMb(int localCacheMaxSizeMb) {
+        this.localCacheMaxSizeMb = localCacheMaxSizeMb > 0 ? localCacheMaxSizeMb : DEFAULT_LOCAL_CACHE_MAX_SIZE_MB;
+    }
+
+    public long getLocalCacheMaxSizeBytes() {
+        return localCacheMaxSizeMb * MB;
+    }
+
+    public int getDownloadBufferSizeKb() {
+        return downloadBufferSizeKb;
+    }
+
+    public void setDownloadBufferSizeKb(int downloadBufferSizeKb) {
+        this.downloadBufferSizeKb = downloadBufferSizeKb > 0 ? downloadBufferSizeKb : DEFAULT_DOWNLOAD_BUFFER_SIZE_KB;
+    }
+
+    public int getDownloadBufferSizeBytes() {
+        return Math.min(downloadBufferSizeKb, 64 * 1024) * 1024;
+    }
+
+    public int getDeleteParallelism() {
+        return deleteParallelism;
+    }
+
+    /**
+     * Folders are deleted file by file with this number of threads. One deletes a folder with a single request
+     * @param deleteParallelism the number of threads
+     */
+    public void setDeleteParallelism(int deleteParallelism) {
+        this.deleteParallelism = deleteParallelism > 0 ? deleteParallelism : DEFAULT_DELETE_PARALLELISM;
+    }
+
+    public int getDeleteRequestsPerSecond() {
+        return deleteRequestsPerSecond;
+    }
+
+    /**
+     * Maximum number of delete requests per second of a file by file deletion. Zero disables the limit
+     * @param deleteRequestsPerSecond the number of requests per second
+     */
+    public void setDeleteRequestsPerSecond(int deleteRequestsPerSecond) {
+        this.deleteRequestsPerSecond = Math.max(0, deleteRequestsPerSecond);
+    }
+
+    public ArtifactoryCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Compression of the archives saved by the agents. Restores use the codec stored with each artifact
+     * @param codec the codec
+     */
+    public void setCodec(ArtifactoryCodec codec) {
+        this.codec = codec != null ? codec : ArtifactoryCodec.NONE;
+    }
+
+    public int getCodecLevel() {
+        return codecLevel;
+    }
+
+    /**
+     * @param codecLevel the compression level, 0 for the codec default
+     */
+    public void setCodecLevel(int codecLevel) {
+        this.codecLevel = Math.max(0, codecLevel);
+    }
+
+    public String getChunkRoot() {
+        return chunkRoot;
+    }
+
+    /**
+     * Folder of the deduplicated chunks. Null stores each archive in full
+     * @param chunkRoot the folder in the repository
+     */
+    public void setChunkRoot(String chunkRoot) {
+        this.chunkRoot = chunkRoot;
+    }
+
+    public String getStagingRoot() {
+        return stagingRoot;
+    }
+
+    /**
+     * Folder where archives are uploaded before being moved to their path. Null uploads them straight to their path
+     * @param stagingRoot the folder in the repository
+     */
+    public void setStagingRoot(String stagingRoot) {
+        this.stagingRoot = stagingRoot;
+    }
+
+    public int getChunkSizeKb() {
+        return chunkSizeKb;
+    }
+
+    /**
+     * @param chunkSizeKb the average size of the deduplicated chunks
+     */
+    public void setChunkSizeKb(int chunkSizeKb) {
+        this.chunkSizeKb = chunkSizeKb > 0 ? chunkSizeKb : DEFAULT_CHUNK_SIZE_KB;
+    }
+
+    public long getChunkSizeBytes() {
+        return chunkSizeKb * 1024L;
+    }
+
+    public List<String> getRestoreKeys() {
+        return restoreKeys;
+    }
+
+    /**
+     * Prefixes tried in order when a cache is missing, relative to the folder of the job
+     * @param restoreKeys the prefixes
+     */
+    public void setRestoreKeys(List<String> restoreKeys) {
+        this.restoreKeys = restoreKeys != null ? List.copyOf(restoreKeys) : List.of();
+    }
+
+    public boolean isAgentMetadata() {
+        return agentMetadata;
+    }
+
+    /**
+     * Run the existence and metadata checks of the transfers on the agents instead of the controller
+     * @param agentMetadata true to check on the agents
+     */
+    public void setAgentMetadata(boolean agentMetadata) {
+        this.agentMetadata = agentMetadata;
+    }
+}
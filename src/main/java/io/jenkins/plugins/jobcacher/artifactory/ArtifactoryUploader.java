@@ -0,0 +1,520 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import com.google.common.io.ByteStreams;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Agent side upload of artifacts. Archives above the multipart threshold are split into parts uploaded in parallel,
+ * each part being retried on its own, and a manifest listing the parts is published at the artifact path.
+ * Archives are first compressed with the configured codec, which is stored as a property of the artifact.
+ * With deduplication, archives are split into content-defined chunks stored once by checksum below the chunk root,
+ * and only the chunks missing from the repository are uploaded. Chunks already stored but not updated for a while are
+ * deployed again by checksum, which sends no content but marks them as recently updated, so retention doesn't collect
+ * them meanwhile.
+ * Archives and manifests are uploaded to a staging path then moved to their path, so a restore never reads a partly
+ * written artifact.
+ */
+final class ArtifactoryUploader {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(ArtifactoryUploader.class);
+
+    /**
+     * Suffix of the folder holding the parts of a multipart upload
+     */
+    static final String PARTS_SUFFIX = ".parts";
+
+    /**
+     * Age from which reused chunks are deployed again. Retention only collects chunks older than its grace time, so
+     * more recent chunks are safe as long as a save and a retention run each last less than the difference
+     */
+    static final long CHUNK_REFRESH_MS = ArtifactoryRetention.CHUNK_GRACE_MS / 2;
+
+    /**
+     * Time during which the parts of a replaced upload are kept, as restores that read the previous manifest may still
+     * be downloading them
+     */
+    static final long PARTS_GRACE_MS = TimeUnit.MINUTES.toMillis(
+            SystemProperties.getLong(ArtifactoryUploader.class.getName() + ".partsGraceMinutes", 30L));
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 1000L;
+
+    /**
+     * Number of chunks checked by a single search
+     */
+    private static final int EXISTENCE_BATCH_SIZE = 200;
+
+    private final ArtifactoryClient client;
+    private final ArtifactoryTransferSettings settings;
+
+    ArtifactoryUploader(ArtifactoryClient client, ArtifactoryTransferSettings settings) {
+        this.client = client;
+        this.settings = settings;
+    }
+
+    /**
+     * Save a cache. The file is hashed once, and the checksums are reused by the upload
+     * @param file the file to upload
+     * @param path the path of the artifact
+     * @param previous the SHA-256 of the content last uploaded at this path, null if unknown
+     * @param checkStored true to check that unchanged content is still stored before skipping its upload, false if the
+     * caller already checked it
+     * @return the outcome of the save
+     * @throws IOException if the file cannot be uploaded
+     * @throws InterruptedException if interrupted while waiting for parts
+     */
+    Saved save(File file, String path, String previous, boolean checkStored) throws IOException, InterruptedException {
+        ArtifactoryChecksums checksums = ArtifactoryChecksums.compute(file.toPath());
+        String hash = checksums.getSha256();
+        if (hash.equals(previous)) {
+            if (!checkStored) {
+                return new Saved(hash, 0, true, false);
+            }
+            ArtifactoryItemInfo info = client.info(path);
+            if (info != null && info.isFile()) {
+                return new Saved(hash, 0, true, true);
+            }
+        }
+        upload(file, path, checksums);
+        return new Saved(hash, file.length(), false, checkStored && hash.equals(previous));
+    }
+
+    /**
+     * Upload a file
+     * @param file the file to upload
+     * @param path the path of the artifact
+     * @throws IOException if the file cannot be uploaded
+     * @throws InterruptedException if interrupted while waiting for parts
+     */
+    void upload(File file, String path) throws IOException, InterruptedException {
+        upload(file, path, (ArtifactoryChecksums) null);
+    }
+
+    /**
+     * Upload a file already hashed by the caller
+     * @param file the file to upload
+     * @param path the path of the artifact
+     * @param checksums the checksums of the file, or null to compute them when needed
+     * @throws IOException if the file cannot be uploaded
+     * @throws InterruptedException if interrupted while waiting for parts
+     */
+    void upload(File file, String path, ArtifactoryChecksums checksums) throws IOException, InterruptedException {
+        if (settings.getChunkRoot() != null) {
+            // Compression would change the whole archive on any change, so chunks are stored as is
+            uploadChunks(file, path, ArtifactoryCodec.NONE.toProperties(0));
+            return;
+        }
+        ArtifactoryCodec codec = settings.getCodec();
+        // Always set, so a previous compressed upload of the same artifact doesn't leave a stale codec
+        Map<String, String> properties = codec.toProperties(settings.getCodecLevel());
+        if (codec == ArtifactoryCodec.NONE) {
+            upload(file, path, properties, checksums);
+            return;
+        }
+        // Spooled to disk, as deploy by checksum and multipart uploads need the compressed size and checksums first
+        File compressed =
+                File.createTempFile("jobcacher-", "." + codec.getId(), file.getAbsoluteFile().getParentFile());
+        try {
+            codec.compress(file, compressed, settings.getCodecLevel());
+            LOGGER.debug(
+                    "Compressed {} with {} from {} to {} bytes",
+                    path,
+                    codec.getId(),
+                    file.length(),
+                    compressed.length());
+            upload(compressed, path, properties, null);
+        } finally {
+            Files.deleteIfExists(compressed.toPath());
+        }
+    }
+
+    private void upload(File file, String path, Map<String, String> properties, ArtifactoryChecksums known)
+            throws IOException, InterruptedException {
+        long threshold = settings.getMultipartThresholdBytes();
+        if (threshold > 0 && file.length() > threshold) {
+            uploadParts(file, path, properties);
+            return;
+        }
+        ArtifactoryChecksums checksums = known != null ? known : ArtifactoryChecksums.compute(file.toPath());
+        // Always set, so a previous manifest of the same artifact doesn't leave a stale marker
+        Map<String, String> archive = withProperty(properties, ArtifactoryManifest.PROPERTY, "false");
+        publish(path, checksums, archive, target -> client.uploadArtifact(file.toPath(), target, archive));
+        // The archive may have been uploaded in parts before it went under the threshold
+        if (threshold > 0) {
+            deletePreviousParts(path, null);
+        }
+    }
+
+    private void uploadParts(File file, String path, Map<String, String> properties)
+            throws IOException, InterruptedException {
+        long size = file.length();
+        long partSize = settings.getUploadPartSizeBytes();
+        int parts = (int) ((size + partSize - 1) / partSize);
+        String uploadId = UUID.randomUUID().toString();
+        String partsRoot = path + PARTS_SUFFIX;
+        LOGGER.trace("Uploading {} in {} parts of {} bytes", path, parts, partSize);
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(settings.getUploadParallelism(), parts),
+                new NamingThreadFactory(new DaemonThreadFactory(), "ArtifactoryUploader"));
+        List<ArtifactoryManifest.Segment> segments = new ArrayList<>();
+        try {
+            List<Future<ArtifactoryManifest.Segment>> futures = new ArrayList<>();
+            for (int i = 0; i < parts; i++) {
+                // Listed relative to the parts folder, so the parts follow the manifest when its job is moved
+                String name = String.format("%s/%05d", uploadId, i);
+                long offset = i * partSize;
+                long length = Math.min(partSize, size - offset);
+                futures.add(executor.submit(() -> ArtifactoryManifest.Segment.part(
+                        name,
+                        offset,
+                        length,
+                        uploadPartWithRetry(file, String.format("%s/%s", partsRoot, name), offset, length))));
+            }
+            for (Future<ArtifactoryManifest.Segment> future : futures) {
+                segments.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            deleteQuietly(String.format("%s/%s", partsRoot, uploadId));
+            throw failure(e, path);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        byte[] manifest =
+                new ArtifactoryManifest(size, segments).toJson().getBytes(StandardCharsets.UTF_8);
+        publishManifest(manifest, path, properties);
+        deletePreviousParts(path, uploadId);
+    }
+
+    private void uploadChunks(File file, String path, Map<String, String> properties)
+            throws IOException, InterruptedException {
+        String chunkRoot = settings.getChunkRoot();
+        List<ArtifactoryChunker.Chunk> chunks = new ArtifactoryChunker(settings.getChunkSizeBytes()).split(file);
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(settings.getUploadParallelism(), chunks.size())),
+                new NamingThreadFactory(new DaemonThreadFactory(), "ArtifactoryUploader"));
+        List<ArtifactoryManifest.Segment> segments = new ArrayList<>();
+        try {
+            List<Future<ArtifactoryChecksums>> checksums = new ArrayList<>();
+            for (ArtifactoryChunker.Chunk chunk : chunks) {
+                checksums.add(executor.submit(() -> {
+                    try (InputStream is = openRange(file, chunk.getOffset(), chunk.getLength())) {
+                        return ArtifactoryChecksums.compute(is);
+                    }
+                }));
+            }
+            // Chunks repeated in the archive are uploaded once
+            Map<String, ArtifactoryManifest.Segment> distinct = new LinkedHashMap<>();
+            Map<String, ArtifactoryChecksums> distinctChecksums = new HashMap<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                ArtifactoryChunker.Chunk chunk = chunks.get(i);
+                ArtifactoryChecksums chunkChecksums = checksums.get(i).get();
+                String sha1 = chunkChecksums.getSha1();
+                ArtifactoryManifest.Segment segment = new ArtifactoryManifest.Segment(
+                        chunkPath(chunkRoot, sha1), chunk.getOffset(), chunk.getLength(), sha1);
+                segments.add(segment);
+                distinct.putIfAbsent(sha1, segment);
+                distinctChecksums.putIfAbsent(sha1, chunkChecksums);
+            }
+            List<String> names = new ArrayList<>(distinct.keySet());
+            Map<String, Long> existing = new HashMap<>();
+            for (int i = 0; i < names.size(); i += EXISTENCE_BATCH_SIZE) {
+                List<String> batch = names.subList(i, Math.min(i + EXISTENCE_BATCH_SIZE, names.size()));
+                existing.putAll(client.findExisting(chunkRoot, batch));
+            }
+            long refreshBefore = System.currentTimeMillis() - CHUNK_REFRESH_MS;
+            List<Future<?>> uploads = new ArrayList<>();
+            int uploaded = 0;
+            int refreshed = 0;
+            for (ArtifactoryManifest.Segment segment : distinct.values()) {
+                Long updated = existing.get(segment.getSha1());
+                if (updated == null) {
+                    uploaded++;
+                    uploads.add(executor.submit(() -> uploadPartWithRetry(
+                            file, segment.getPath(), segment.getOffset(), segment.getSize())));
+                } else if (updated < refreshBefore) {
+                    refreshed++;
+                    // Refreshes the update time checked by retention, or uploads a chunk collected since the search
+                    ArtifactoryChecksums chunkChecksums = distinctChecksums.get(segment.getSha1());
+                    uploads.add(executor.submit(() -> {
+                        if (!client.deployByChecksum(segment.getPath(), chunkChecksums)) {
+                            uploadPartWithRetry(file, segment.getPath(), segment.getOffset(), segment.getSize());
+                        }
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : uploads) {
+                future.get();
+            }
+            LOGGER.debug(
+                    "Uploaded {} and refreshed {} of {} distinct chunks of {} ({} chunks)",
+                    uploaded,
+                    refreshed,
+                    distinct.size(),
+                    path,
+                    chunks.size());
+        } catch (ExecutionException e) {
+            throw failure(e, path);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        byte[] manifest =
+                new ArtifactoryManifest(file.length(), segments).toJson().getBytes(StandardCharsets.UTF_8);
+        publishManifest(manifest, path, properties);
+        // The archive may have been uploaded in parts before deduplication was enabled
+        if (settings.getMultipartThresholdBytes() > 0) {
+            deletePreviousParts(path, null);
+        }
+    }
+
+    private void publishManifest(byte[] manifest, String path, Map<String, String> properties) throws IOException {
+        ArtifactoryChecksums checksums = ArtifactoryChecksums.compute(new ByteArrayInputStream(manifest));
+        Map<String, String> marked = withProperty(properties, ArtifactoryManifest.PROPERTY, "true");
+        publish(path, checksums, marked, target -> {
+            client.uploadArtifact(new ByteArrayInputStream(manifest), manifest.length, target, marked);
+        });
+    }
+
+    private static Map<String, String> withProperty(Map<String, String> properties, String name, String value) {
+        Map<String, String> result = new HashMap<>(properties);
+        result.put(name, value);
+        return result;
+    }
+
+    /**
+     * Publish content at its path. Content known by Artifactory is deployed by checksum. Other content is uploaded to
+     * the staging folder, then moved to its path, or deployed there by checksum when the move API is unavailable
+     */
+    private void publish(String path, ArtifactoryChecksums checksums, Map<String, String> properties, Upload upload)
+            throws IOException {
+        if (client.deployByChecksum(path, checksums, properties)) {
+            return;
+        }
+        String stagingRoot = settings.getStagingRoot();
+        if (stagingRoot == null) {
+            upload.to(path);
+            return;
+        }
+        String staged = String.format(
+                "%s/%s-%s", stagingRoot, UUID.randomUUID(), path.substring(path.lastIndexOf('/') + 1));
+        upload.to(staged);
+        try {
+            client.move(staged, path);
+            return;
+        } catch (RuntimeException e) {
+            // Artifactory OSS has no move API
+            LOGGER.debug("Server side move of {} failed, deploying by checksum: {}", staged, e.getMessage());
+        }
+        try {
+            if (!client.deployByChecksum(path, checksums, properties)) {
+                throw new IOException(String.format("Staged upload of %s not found by checksum", path));
+            }
+        } finally {
+            deleteQuietly(staged);
+        }
+    }
+
+    /**
+     * Chunks are spread in folders by the first characters of their checksum
+     */
+    static String chunkPath(String chunkRoot, String sha1) {
+        return String.format("%s/%s/%s", chunkRoot, sha1.substring(0, 2), sha1);
+    }
+
+    private static IOException failure(ExecutionException e, String path) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(String.format("Failed to upload %s", path), cause);
+    }
+
+    /**
+     * Upload a part, retried on failure
+     * @return the SHA-1 of the part
+     */
+    private String uploadPartWithRetry(File file, String partPath, long offset, long length)
+            throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return uploadPart(file, partPath, offset, length);
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.debug(
+                        "Failed to upload part {} (attempt {}/{}): {}",
+                        partPath,
+                        attempt,
+                        MAX_ATTEMPTS,
+                        e.getMessage());
+                TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MS * attempt);
+            }
+        }
+    }
+
+    private String uploadPart(File file, String partPath, long offset, long length) throws IOException {
+        ArtifactoryChecksums checksums;
+        try (InputStream is = openRange(file, offset, length)) {
+            checksums = ArtifactoryChecksums.compute(is);
+        }
+        // Parts already known by Artifactory, for example from an interrupted upload, are not sent again
+        if (!client.deployByChecksum(partPath, checksums)) {
+            try (InputStream is = openRange(file, offset, length)) {
+                client.uploadArtifact(is, length, partPath);
+            }
+        }
+        return checksums.getSha1();
+    }
+
+    private static InputStream openRange(File file, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        channel.position(offset);
+        return ByteStreams.limit(Channels.newInputStream(channel), length);
+    }
+
+    /**
+     * Delete the parts of previous uploads of the same artifact, now that the new content is published. A restore that
+     * read a previous manifest may still be downloading its parts, so the parts of an upload are only deleted once it
+     * has been replaced for longer than {@link #PARTS_GRACE_MS}. Younger parts are deleted by a later save, or with
+     * their cache. Times are those of the server, so the clock of the agent doesn't matter
+     * @param path the path of the artifact
+     * @param uploadId the id of the upload just published, or null if the artifact was published as a whole
+     */
+    private void deletePreviousParts(String path, String uploadId) {
+        String partsRoot = path + PARTS_SUFFIX;
+        try {
+            if (!client.isFolder(partsRoot)) {
+                return;
+            }
+            // Last modification of the parts of each upload
+            Map<String, Long> uploads = new HashMap<>();
+            try (Stream<ArtifactoryItemInfo> files = client.listFiles(
+                    partsRoot, ArtifactoryClient.LIST_PAGE_SIZE, EnumSet.of(ArtifactoryClient.ListField.MODIFIED))) {
+                files.forEach(file -> {
+                    if (!file.getPath().startsWith(partsRoot + "/")) {
+                        return;
+                    }
+                    String relative = file.getPath().substring(partsRoot.length() + 1);
+                    int slash = relative.indexOf('/');
+                    String id = slash < 0 ? relative : relative.substring(0, slash);
+                    uploads.merge(id, file.getLastModified(), Math::max);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            long published;
+            if (uploadId != null) {
+                published = uploads.getOrDefault(uploadId, 0L);
+            } else {
+                ArtifactoryItemInfo info = client.info(path);
+                published = info != null ? info.getLastModified() : 0L;
+            }
+            if (published == 0L) {
+                return;
+            }
+            List<Map.Entry<String, Long>> previous = new ArrayList<>(uploads.entrySet());
+            previous.removeIf(upload -> upload.getKey().equals(uploadId));
+            previous.sort(Map.Entry.comparingByValue());
+            List<String> expired = new ArrayList<>();
+            for (int i = 0; i < previous.size(); i++) {
+                // An upload is replaced when the next one is written
+                long replaced = i + 1 < previous.size() ? previous.get(i + 1).getValue() : published;
+                if (replaced < published - PARTS_GRACE_MS) {
+                    expired.add(previous.get(i).getKey());
+                } else {
+                    LOGGER.trace("Keeping parts {} of {}, replaced recently", previous.get(i).getKey(), path);
+                }
+            }
+            if (uploadId == null && expired.size() == uploads.size()) {
+                // The artifact isn't stored in parts anymore
+                deleteQuietly(partsRoot);
+                return;
+            }
+            for (String id : expired) {
+                deleteQuietly(String.format("%s/%s", partsRoot, id));
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to list previous parts under {}", partsRoot, e);
+        }
+    }
+
+    /**
+     * Outcome of a save, sent back to the controller
+     */
+    static final class Saved implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * SHA-256 of the saved file
+         */
+        final String hash;
+
+        /**
+         * Uploaded size, 0 if skipped
+         */
+        final long size;
+
+        /**
+         * True if the content was already uploaded
+         */
+        final boolean skipped;
+
+        /**
+         * True if the agent checked that the content is still stored
+         */
+        final boolean checked;
+
+        private Saved(String hash, long size, boolean skipped, boolean checked) {
+            this.hash = hash;
+            this.size = size;
+            this.skipped = skipped;
+            this.checked = checked;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Upload {
+        void to(String target) throws IOException;
+    }
+
+    private void deleteQuietly(String path) {
+        try {
+            client.deleteArtifact(path);
+        } catch (RuntimeException e) {
+            LOGGER.debug("Failed to delete {}", path, e);
+        }
+    }
+}
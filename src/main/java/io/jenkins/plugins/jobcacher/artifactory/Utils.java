@@ -2,14 +2,64 @@ package io.jenkins.plugins.jobcacher.artifactory;
 
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
 import hudson.security.ACL;
 import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 
 public final class Utils {
 
+    /**
+     * Time to live of a resolved credential. Credentials of other providers than the system store don't notify their
+     * changes, so they are looked up again after it
+     */
+    static final long CREDENTIALS_TTL_MS = TimeUnit.SECONDS.toMillis(
+            SystemProperties.getLong(Utils.class.getName() + ".credentialsTtlSeconds", 300L));
+
+    private static final Map<String, ResolvedCredentials> CREDENTIALS = new ConcurrentHashMap<>();
+
+    /**
+     * Get the credentials of an ID. Resolved credentials are cached, so cache operations don't scan every credential
+     * @param credentialsId the credentials ID
+     * @return the credentials, or null if not found
+     */
     public static StandardUsernamePasswordCredentials getCredentials(String credentialsId) {
+        if (credentialsId == null) {
+            return lookupCredentials(null);
+        }
+        ResolvedCredentials resolved = CREDENTIALS.get(credentialsId);
+        if (resolved != null && resolved.expiresAt > System.currentTimeMillis()) {
+            return resolved.credentials;
+        }
+        StandardUsernamePasswordCredentials credentials = lookupCredentials(credentialsId);
+        // Missing credentials are not cached, so they are found as soon as they are created
+        if (credentials != null) {
+            CREDENTIALS.put(
+                    credentialsId,
+                    new ResolvedCredentials(credentials, System.currentTimeMillis() + CREDENTIALS_TTL_MS));
+        } else {
+            CREDENTIALS.remove(credentialsId);
+        }
+        return credentials;
+    }
+
+    /**
+     * Drop every resolved credential
+     */
+    static void invalidateCredentials() {
+        CREDENTIALS.clear();
+    }
+
+    private static StandardUsernamePasswordCredentials lookupCredentials(String credentialsId) {
         return CredentialsMatchers.firstOrNull(
                 CredentialsProvider.lookupCredentialsInItemGroup(
                         StandardUsernamePasswordCredentials.class, Jenkins.get(), ACL.SYSTEM2, Collections.emptyList()),
@@ -17,4 +67,27 @@ public final class Utils {
                         CredentialsMatchers.withId(credentialsId),
                         CredentialsMatchers.instanceOf(StandardUsernamePasswordCredentials.class)));
     }
+
+    private static final class ResolvedCredentials {
+        private final StandardUsernamePasswordCredentials credentials;
+        private final long expiresAt;
+
+        private ResolvedCredentials(StandardUsernamePasswordCredentials credentials, long expiresAt) {
+            this.credentials = credentials;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * The system credentials store is saved on each change of its credentials
+     */
+    @Extension
+    public static final class CredentialsStoreListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof SystemCredentialsProvider) {
+                invalidateCredentials();
+            }
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import hudson.FilePath;
+import hudson.slaves.DumbSlave;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+/**
+ * Checks run by a real agent, whose JVM has its own client and metrics, so that the requests of the controller can be
+ * told apart from the requests of the agent
+ */
+@WithJenkins
+@WireMockTest
+class ArtifactoryAgentMetadataTest {
+
+    @Test
+    void shouldCheckMetadataOnAgentWithoutControllerRequests(JenkinsRule jenkins, WireMockRuntimeInfo wireMock)
+            throws Exception {
+        ArtifactoryMetadataCache.get().clear();
+        ArtifactoryClient client = new ArtifactoryClient(
+                ArtifactoryClientPoolTest.config(wireMock.getHttpBaseUrl(), "user", "password"));
+        ArtifactoryBatchTransferTest.stubCache("a.tgz", "content-a");
+        ArtifactoryClientTest.stubInfo("jenkins/job/c.tgz", null);
+        DumbSlave agent = jenkins.createOnlineSlave();
+        FilePath workspace = agent.getRootPath().child("caches");
+        ArtifactoryTransferSettings settings = new ArtifactoryTransferSettings();
+        settings.setAgentMetadata(true);
+        Map<ArtifactoryItemPath, FilePath> caches = new LinkedHashMap<>();
+        ArtifactoryItemPath a = new ArtifactoryItemPath(client, "jenkins/job", "a.tgz", settings);
+        caches.put(a, workspace.child("a.tgz"));
+        caches.put(new ArtifactoryItemPath(client, "jenkins/job", "c.tgz", settings), workspace.child("c.tgz"));
+        long requests = ArtifactoryMetrics.get().getRequests();
+        long agentChecks = ArtifactoryMetrics.get().getAgentChecks();
+
+        Set<ArtifactoryItemPath> restored = new ArtifactoryBatchTransfer(4).restore(caches);
+
+        assertEquals(Set.of(a), restored);
+        assertEquals("content-a", workspace.child("a.tgz").readToString());
+        assertFalse(workspace.child("c.tgz").exists());
+        // The server got the metadata requests, none of them from the controller
+        assertEquals(requests, ArtifactoryMetrics.get().getRequests());
+        verify(ArtifactoryClientTest.infoRequestedFor("jenkins/job/a.tgz"));
+        verify(ArtifactoryClientTest.infoRequestedFor("jenkins/job/c.tgz"));
+        assertNull(a.getLoadedInfo());
+        assertEquals(agentChecks + 2, ArtifactoryMetrics.get().getAgentChecks());
+    }
+}
@@ -0,0 +1,93 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import hudson.FilePath;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@WireMockTest
+class ArtifactoryBatchTransferTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private ArtifactoryClient client;
+
+    @BeforeEach
+    void setUp(WireMockRuntimeInfo wireMock) {
+        ArtifactoryMetadataCache.get().clear();
+        client = new ArtifactoryClient(
+                ArtifactoryClientPoolTest.config(wireMock.getHttpBaseUrl(), "user", "password"));
+    }
+
+    @Test
+    void shouldRestoreAllCachesAndSkipMissingOnes() throws Exception {
+        stubCache("a.tgz", "content-a");
+        stubCache("b.tgz", "content-b");
+        ArtifactoryClientTest.stubInfo("jenkins/job/c.tgz", null);
+        Map<ArtifactoryItemPath, FilePath> caches = new LinkedHashMap<>();
+        ArtifactoryItemPath a = new ArtifactoryItemPath(client, "jenkins/job", "a.tgz");
+        ArtifactoryItemPath b = new ArtifactoryItemPath(client, "jenkins/job", "b.tgz");
+        caches.put(a, new FilePath(tempDir.resolve("a.tgz").toFile()));
+        caches.put(b, new FilePath(tempDir.resolve("b.tgz").toFile()));
+        caches.put(
+                new ArtifactoryItemPath(client, "jenkins/job", "c.tgz"),
+                new FilePath(tempDir.resolve("c.tgz").toFile()));
+
+        Set<ArtifactoryItemPath> restored = new ArtifactoryBatchTransfer(4).restore(caches);
+
+        assertEquals(Set.of(a, b), restored);
+        assertEquals("content-a", Files.readString(tempDir.resolve("a.tgz"), StandardCharsets.UTF_8));
+        assertEquals("content-b", Files.readString(tempDir.resolve("b.tgz"), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(tempDir.resolve("c.tgz")));
+        verify(0, getRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/job/c.tgz")));
+    }
+
+    @Test
+    void shouldSaveAllCaches() throws Exception {
+        ArtifactoryClientTest.stubInfo("jenkins/job/d.tgz", null);
+        ArtifactoryClientTest.stubInfo("jenkins/job/e.tgz", null);
+        stubFor(put(urlPathMatching("/my-generic-repo/jenkins/job/.*"))
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(notFound()));
+        stubFor(put(urlPathMatching("/my-generic-repo/jenkins/job/.*"))
+                .withHeader("X-Checksum-Deploy", absent())
+                .willReturn(created()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"repo\":\"my-generic-repo\",\"path\":\"/jenkins/job/cache.tgz\"}")));
+        Map<ArtifactoryItemPath, FilePath> caches = new LinkedHashMap<>();
+        caches.put(
+                new ArtifactoryItemPath(client, "jenkins/job", "d.tgz"),
+                new FilePath(Files.writeString(tempDir.resolve("d.tgz"), "content-d").toFile()));
+        caches.put(
+                new ArtifactoryItemPath(client, "jenkins/job", "e.tgz"),
+                new FilePath(Files.writeString(tempDir.resolve("e.tgz"), "content-e").toFile()));
+
+        new ArtifactoryBatchTransfer(4).save(caches);
+
+        verify(putRequestedFor(urlPathMatching("/my-generic-repo/jenkins/job/d\\.tgz.*"))
+                .withHeader("X-Checksum-Deploy", absent())
+                .withRequestBody(equalTo("content-d")));
+        verify(putRequestedFor(urlPathMatching("/my-generic-repo/jenkins/job/e\\.tgz.*"))
+                .withHeader("X-Checksum-Deploy", absent())
+                .withRequestBody(equalTo("content-e")));
+    }
+
+    static void stubCache(String name, String content) {
+        ArtifactoryClientTest.stubInfo(
+                "jenkins/job/" + name,
+                "\"type\":\"file\",\"size\":" + content.length() + ",\"modified\":\"2024-01-02T10:11:12.345Z\"");
+        stubFor(get(urlPathEqualTo("/my-generic-repo/jenkins/job/" + name)).willReturn(ok(content)));
+    }
+}
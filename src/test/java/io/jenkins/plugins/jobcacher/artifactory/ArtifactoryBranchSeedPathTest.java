@@ -0,0 +1,71 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@WireMockTest
+class ArtifactoryBranchSeedPathTest {
+
+    private ArtifactoryClient client;
+
+    @BeforeEach
+    void setUp(WireMockRuntimeInfo wireMock) {
+        ArtifactoryMetadataCache.get().clear();
+        client = new ArtifactoryClient(
+                ArtifactoryClientPoolTest.config(wireMock.getHttpBaseUrl(), "user", "password"));
+        // Most recently modified first, as sorted by the search
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":["
+                        + "{\"path\":\"jenkins/project/nested/feature-a/caches\",\"name\":\"cache.tgz\"},"
+                        + "{\"path\":\"jenkins/project/feature-b/caches\",\"name\":\"cache.tgz\"},"
+                        + "{\"path\":\"jenkins/project/main/caches\",\"name\":\"cache.tgz\"}]}")));
+    }
+
+    @Test
+    void shouldPreferDefaultBranch() throws Exception {
+        ArtifactoryBranchSeedPath path = seedPath(List.of("develop", "main"));
+
+        assertTrue(path.exists());
+        assertEquals("jenkins/project/main", path.getSeed().getFullName());
+        assertEquals("caches/cache.tgz", path.getSeed().getPath());
+        verify(1, postRequestedFor(urlPathEqualTo("/api/search/aql"))
+                .withRequestBody(containing("\"path\":{\"$match\":\"jenkins/project/*/caches\"}"))
+                .withRequestBody(containing("\"name\":\"cache.tgz\"")));
+    }
+
+    @Test
+    void shouldFallBackToMostRecentSibling() throws Exception {
+        ArtifactoryBranchSeedPath path = seedPath(List.of("develop"));
+
+        assertTrue(path.exists());
+        // The nested folder is not a branch
+        assertEquals("jenkins/project/feature-b", path.getSeed().getFullName());
+    }
+
+    @Test
+    void shouldNeverWriteToSeed() throws Exception {
+        ArtifactoryBranchSeedPath path = seedPath(List.of("main"));
+
+        path.copyFrom(null);
+        path.deleteRecursive();
+
+        verify(0, putRequestedFor(anyUrl()));
+        verify(0, deleteRequestedFor(anyUrl()));
+    }
+
+    private ArtifactoryBranchSeedPath seedPath(List<String> preferredBranches) {
+        return new ArtifactoryBranchSeedPath(
+                client,
+                "jenkins/project",
+                "feature-c",
+                preferredBranches,
+                "caches/cache.tgz",
+                new ArtifactoryTransferSettings());
+    }
+}
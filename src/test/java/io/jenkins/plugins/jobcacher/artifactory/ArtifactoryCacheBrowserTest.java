@@ -0,0 +1,63 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@WireMockTest
+class ArtifactoryCacheBrowserTest {
+
+    private ArtifactoryClient client;
+
+    @BeforeEach
+    void setUp(WireMockRuntimeInfo wireMock) {
+        ArtifactoryMetadataCache.get().clear();
+        ArtifactoryCacheBrowser.clear();
+        client = new ArtifactoryClient(
+                ArtifactoryClientPoolTest.config(wireMock.getHttpBaseUrl(), "user", "password"));
+    }
+
+    @Test
+    void shouldRenderPageWithBoundedQuery() throws Exception {
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":[{\"path\":\"jenkins/job/cache\",\"name\":\"<a>.tgz\",\"size\":2048,"
+                        + "\"modified\":\"2024-01-02T03:04:05.000Z\","
+                        + "\"stats\":[{\"downloaded\":\"2024-02-03T04:05:06.000Z\"}]}]}")));
+
+        String html = new ArtifactoryCacheBrowser(client, "jenkins/job/cache").render(0);
+
+        assertTrue(html.contains("&lt;a&gt;.tgz"));
+        assertTrue(html.contains("2024-01-02T03:04:05Z"));
+        assertTrue(html.contains("2024-02-03T04:05:06Z"));
+        assertFalse(html.contains("Next"));
+        assertFalse(html.contains("Previous"));
+        verify(postRequestedFor(urlPathEqualTo("/api/search/aql"))
+                .withRequestBody(containing(".offset(0).limit(" + (ArtifactoryCacheBrowser.PAGE_SIZE + 1) + ")"))
+                .withRequestBody(containing("\"stat.downloaded\"")));
+    }
+
+    @Test
+    void shouldLinkNextPageAndReuseRenderedPage() throws Exception {
+        StringBuilder results = new StringBuilder("{\"results\":[");
+        for (int i = 0; i <= ArtifactoryCacheBrowser.PAGE_SIZE; i++) {
+            results.append(i > 0 ? "," : "")
+                    .append("{\"path\":\"jenkins/job/cache\",\"name\":\"")
+                    .append(i)
+                    .append(".tgz\"}");
+        }
+        stubFor(post(urlPathEqualTo("/api/search/aql")).willReturn(okJson(results.append("]}").toString())));
+
+        ArtifactoryCacheBrowser browser = new ArtifactoryCacheBrowser(client, "jenkins/job/cache");
+        String html = browser.render(ArtifactoryCacheBrowser.PAGE_SIZE);
+
+        assertTrue(html.contains("?start=" + 2 * ArtifactoryCacheBrowser.PAGE_SIZE + "\">Next"));
+        assertTrue(html.contains("?start=0\">Previous"));
+        assertFalse(html.contains(">" + ArtifactoryCacheBrowser.PAGE_SIZE + ".tgz<"));
+        assertEquals(html, browser.render(ArtifactoryCacheBrowser.PAGE_SIZE));
+        verify(1, postRequestedFor(urlPathEqualTo("/api/search/aql")));
+    }
+}
@@ -0,0 +1,78 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArtifactoryChunkerTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void shouldCoverFileWithBoundedChunks() throws Exception {
+        byte[] content = random(1024 * 1024);
+        File file = Files.write(tempDir.resolve("cache.tgz"), content).toFile();
+
+        List<ArtifactoryChunker.Chunk> chunks = new ArtifactoryChunker(16 * 1024).split(file);
+
+        long offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            ArtifactoryChunker.Chunk chunk = chunks.get(i);
+            assertEquals(offset, chunk.getOffset());
+            assertTrue(chunk.getLength() <= 64 * 1024);
+            if (i < chunks.size() - 1) {
+                assertTrue(chunk.getLength() >= 4 * 1024);
+            }
+            offset += chunk.getLength();
+        }
+        assertEquals(content.length, offset);
+        assertTrue(chunks.size() > 16 && chunks.size() < 256, "Unexpected number of chunks " + chunks.size());
+    }
+
+    @Test
+    void shouldKeepMostChunksAfterInsertion() throws Exception {
+        byte[] content = random(1024 * 1024);
+        byte[] modified = new byte[content.length + 100];
+        System.arraycopy(content, 0, modified, 0, 500_000);
+        System.arraycopy(content, 500_000, modified, 500_100, content.length - 500_000);
+        File original = Files.write(tempDir.resolve("original.tgz"), content).toFile();
+        File changed = Files.write(tempDir.resolve("changed.tgz"), modified).toFile();
+        ArtifactoryChunker chunker = new ArtifactoryChunker(16 * 1024);
+
+        Set<Long> before = ends(chunker.split(original), 0, 500_000);
+        Set<Long> after = ends(chunker.split(changed), 100, 500_100);
+
+        // Boundaries after the insertion are shifted by its size, all but the one around it are kept
+        before.retainAll(after);
+        assertTrue(before.size() >= after.size() - 2, "Only " + before.size() + " boundaries kept");
+    }
+
+    /**
+     * End of the chunks found after the given position, shifted back by the given offset
+     */
+    private static Set<Long> ends(List<ArtifactoryChunker.Chunk> chunks, long shift, long from) {
+        Set<Long> ends = new HashSet<>();
+        for (ArtifactoryChunker.Chunk chunk : chunks) {
+            long end = chunk.getOffset() + chunk.getLength();
+            if (end > from) {
+                ends.add(end - shift);
+            }
+        }
+        return ends;
+    }
+
+    private static byte[] random(int size) {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,66 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
+import hudson.util.Secret;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ArtifactoryClientPoolTest {
+
+    private ArtifactoryClientPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ArtifactoryClientPool(2, 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.clear();
+    }
+
+    @Test
+    void shouldReuseClientForSameConfig() {
+        ArtifactoryClient.ArtifactoryConfig config = config("http://localhost:7000", "user", "password");
+        try (ArtifactoryClientPool.Lease first = pool.lease(config);
+                ArtifactoryClientPool.Lease second = pool.lease(config)) {
+            assertSame(first.artifactory(), second.artifactory());
+        }
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    void shouldRebuildClientWhenCredentialsChange() {
+        try (ArtifactoryClientPool.Lease first = pool.lease(config("http://localhost:7000", "user", "password"));
+                ArtifactoryClientPool.Lease second = pool.lease(config("http://localhost:7000", "user", "rotated"))) {
+            assertNotSame(first.artifactory(), second.artifactory());
+        }
+        assertEquals(2, pool.getMisses());
+        assertEquals(0, pool.getHits());
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedAboveMaxSize() {
+        pool.lease(config("http://localhost:7001", "user", "password")).close();
+        pool.lease(config("http://localhost:7002", "user", "password")).close();
+        pool.lease(config("http://localhost:7003", "user", "password")).close();
+        assertEquals(2, pool.getSize());
+        assertEquals(1, pool.getEvictions());
+    }
+
+    static ArtifactoryClient.ArtifactoryConfig config(String serverUrl, String username, String password) {
+        Secret secret = mock(Secret.class);
+        doReturn(password).when(secret).getPlainText();
+        UsernamePasswordCredentials credentials = mock(UsernamePasswordCredentials.class);
+        doReturn(username).when(credentials).getUsername();
+        doReturn(secret).when(credentials).getPassword();
+        return new ArtifactoryClient.ArtifactoryConfig(serverUrl, "my-generic-repo", credentials);
+    }
+}
@@ -0,0 +1,262 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@WireMockTest
+class ArtifactoryClientTest {
+
+    private static final String ARTIFACT_URL = "/my-generic-repo/jenkins/job/cache.tgz";
+
+    @TempDir
+    private Path tempDir;
+
+    private ArtifactoryClient client;
+
+    @BeforeEach
+    void setUp(WireMockRuntimeInfo wireMock) {
+        ArtifactoryMetadataCache.get().clear();
+        client = new ArtifactoryClient(
+                ArtifactoryClientPoolTest.config(wireMock.getHttpBaseUrl(), "user", "password"));
+    }
+
+    @Test
+    void shouldDeployByChecksumWhenContentIsKnown() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("cache.tgz"), "content", StandardCharsets.UTF_8);
+        ArtifactoryChecksums checksums = ArtifactoryChecksums.compute(file);
+        stubFor(put(urlPathEqualTo(ARTIFACT_URL))
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .withHeader("X-Checksum-Sha1", equalTo(checksums.getSha1()))
+                .willReturn(created()));
+
+        assertTrue(client.deployByChecksum("jenkins/job/cache.tgz", checksums));
+
+        verify(1, putRequestedFor(urlPathEqualTo(ARTIFACT_URL)));
+    }
+
+    @Test
+    void shouldUploadContentWhenChecksumIsUnknown() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("cache.tgz"), "content", StandardCharsets.UTF_8);
+        ArtifactoryChecksums checksums = ArtifactoryChecksums.compute(file);
+        stubFor(put(urlPathEqualTo(ARTIFACT_URL))
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(notFound()));
+        stubFor(put(urlPathEqualTo(ARTIFACT_URL))
+                .withHeader("X-Checksum-Deploy", absent())
+                .willReturn(created()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"repo\":\"my-generic-repo\",\"path\":\"/jenkins/job/cache.tgz\"}")));
+
+        long requests = ArtifactoryMetrics.get().getRequests();
+        long uploaded = ArtifactoryMetrics.get().getUploadedBytes();
+
+        assertFalse(client.deployByChecksum("jenkins/job/cache.tgz", checksums));
+        client.uploadArtifact(file, "jenkins/job/cache.tgz");
+
+        assertEquals(requests + 2, ArtifactoryMetrics.get().getRequests());
+        assertEquals(uploaded + "content".length(), ArtifactoryMetrics.get().getUploadedBytes());
+        verify(2, putRequestedFor(urlPathEqualTo(ARTIFACT_URL)));
+        verify(putRequestedFor(urlPathEqualTo(ARTIFACT_URL))
+                .withHeader("X-Checksum-Deploy", absent())
+                .withRequestBody(equalTo("content")));
+    }
+
+    @Test
+    void shouldCheckExistenceWithSingleRequest() throws Exception {
+        stubInfo(
+                "jenkins/job/cache.tgz",
+                "\"type\":\"file\",\"size\":1234,\"modified\":\"2024-01-02T10:11:12.345Z\","
+                        + "\"actual_sha1\":\"abc\",\"sha256\":\"def\","
+                        + "\"properties\":[{\"key\":\"jobcacher.codec\",\"value\":\"zstd\"}]");
+        ArtifactoryItemPath itemPath = new ArtifactoryItemPath(client, "jenkins/job", "cache.tgz");
+
+        assertTrue(itemPath.exists());
+        assertTrue(itemPath.exists());
+        ArtifactoryItemInfo info = itemPath.getInfo();
+        assertEquals(1234, info.getSize());
+        assertEquals(1704190272345L, info.getLastModified());
+        assertEquals("abc", info.getChecksums().getSha1());
+        assertEquals("def", info.getChecksums().getSha256());
+        assertTrue(info.hasProperties());
+        assertEquals("zstd", info.getProperty(ArtifactoryCodec.CODEC_PROPERTY));
+
+        verify(1, infoRequestedFor("jenkins/job/cache.tgz"));
+    }
+
+    @Test
+    void shouldNotExistWhenMissing() throws Exception {
+        stubInfo("jenkins/job/cache.tgz", null);
+        ArtifactoryItemPath itemPath = new ArtifactoryItemPath(client, "jenkins/job", "cache.tgz");
+
+        assertFalse(itemPath.exists());
+        assertNull(itemPath.getInfo());
+
+        verify(1, infoRequestedFor("jenkins/job/cache.tgz"));
+    }
+
+    @Test
+    void shouldListFilesInPages() throws Exception {
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .withRequestBody(containing(".offset(0).limit(2)"))
+                .willReturn(okJson("{\"results\":["
+                        + "{\"path\":\"jenkins/job\",\"name\":\"a.tgz\",\"size\":1},"
+                        + "{\"path\":\"jenkins/job/sub\",\"name\":\"b.tgz\",\"size\":2}]}")));
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .withRequestBody(containing(".offset(2).limit(2)"))
+                .willReturn(okJson("{\"results\":[{\"path\":\"jenkins/job\",\"name\":\"c.tgz\",\"size\":3}]}")));
+
+        List<ArtifactoryItemInfo> files;
+        try (Stream<ArtifactoryItemInfo> stream =
+                client.listFiles("jenkins/job", 2, EnumSet.of(ArtifactoryClient.ListField.SIZE))) {
+            files = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(
+                List.of("jenkins/job/a.tgz", "jenkins/job/sub/b.tgz", "jenkins/job/c.tgz"),
+                files.stream().map(ArtifactoryItemInfo::getPath).collect(Collectors.toList()));
+        assertEquals(3, files.get(2).getSize());
+        verify(2, postRequestedFor(urlPathEqualTo("/api/search/aql")));
+        verify(postRequestedFor(urlPathEqualTo("/api/search/aql"))
+                .withRequestBody(containing("\"$match\":\"jenkins/job/*\""))
+                .withRequestBody(containing(".include(\"path\",\"name\",\"size\")")));
+    }
+
+    @Test
+    void shouldListProperties() throws Exception {
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":[{\"path\":\"jenkins/job\",\"name\":\"cache.tgz\","
+                        + "\"properties\":[{\"key\":\"jobcacher.manifest\",\"value\":\"true\"}]}]}")));
+
+        List<ArtifactoryItemInfo> files;
+        try (Stream<ArtifactoryItemInfo> stream =
+                client.listFiles("jenkins/job", 2, EnumSet.of(ArtifactoryClient.ListField.PROPERTIES))) {
+            files = stream.collect(Collectors.toList());
+        }
+
+        assertEquals("true", files.get(0).getProperty(ArtifactoryManifest.PROPERTY));
+        assertNull(files.get(0).getProperty(ArtifactoryCodec.CODEC_PROPERTY));
+        verify(postRequestedFor(urlPathEqualTo("/api/search/aql"))
+                .withRequestBody(containing(".include(\"path\",\"name\",\"property.*\")")));
+    }
+
+    @Test
+    void shouldDownloadWithoutUpdatingStatistics() throws Exception {
+        stubFor(get(urlPathEqualTo(ARTIFACT_URL))
+                .withQueryParam("skipUpdateStats", equalTo("true"))
+                .willReturn(ok("content")));
+
+        try (InputStream in = client.downloadUntracked("jenkins/job/cache.tgz")) {
+            assertEquals("content", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        verify(1, getRequestedFor(urlPathEqualTo(ARTIFACT_URL)).withQueryParam("skipUpdateStats", equalTo("true")));
+    }
+
+    @Test
+    void shouldStopListingEarly() throws Exception {
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":["
+                        + "{\"path\":\"jenkins/job\",\"name\":\"a.tgz\"},"
+                        + "{\"path\":\"jenkins/job\",\"name\":\"b.tgz\"}]}")));
+
+        try (Stream<ArtifactoryItemInfo> stream =
+                client.listFiles("jenkins/job", 2, EnumSet.noneOf(ArtifactoryClient.ListField.class))) {
+            assertEquals("jenkins/job/a.tgz", stream.findFirst().orElseThrow().getPath());
+        }
+
+        verify(1, postRequestedFor(urlPathEqualTo("/api/search/aql")));
+    }
+
+    @Test
+    void shouldEncodeCopyTarget() throws Exception {
+        stubFor(post(urlPathMatching("/api/copy/.*"))
+                .willReturn(okJson("{\"messages\":[{\"level\":\"INFO\",\"message\":\"copy successful\"}]}")));
+
+        client.copy("jenkins/my job/cache.tgz", "jenkins/my job 2/cache.tgz");
+
+        verify(1, postRequestedFor(urlMatching("/api/copy/my-generic-repo/jenkins/my%20job/cache\\.tgz\\?to="
+                + ".*jenkins/my%20job%202/cache\\.tgz.*")));
+    }
+
+    @Test
+    void shouldSendAccessTokenWithoutUsername(WireMockRuntimeInfo wireMock) throws Exception {
+        stubInfo("jenkins/job/cache.tgz", null);
+        ArtifactoryClient tokenClient =
+                new ArtifactoryClient(ArtifactoryClientPoolTest.config(wireMock.getHttpBaseUrl(), "", "the-token"));
+
+        assertNull(tokenClient.info("jenkins/job/cache.tgz"));
+
+        verify(infoRequestedFor("jenkins/job/cache.tgz").withHeader("Authorization", equalTo("Bearer the-token")));
+    }
+
+    @Test
+    void shouldFindLatestMatchWithSingleSearch() throws Exception {
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":[{\"path\":\"jenkins/job\",\"name\":\"cache-b.tgz\",\"size\":3,"
+                        + "\"modified\":\"2024-01-02T03:04:05.000Z\"}]}")));
+
+        ArtifactoryItemInfo latest = client.findLatest("jenkins/job", "cache-*.tgz");
+
+        assertEquals("jenkins/job/cache-b.tgz", latest.getPath());
+        assertEquals(3, latest.getSize());
+        verify(1, postRequestedFor(urlPathEqualTo("/api/search/aql"))
+                .withRequestBody(containing("\"name\":{\"$match\":\"cache-*.tgz\"}"))
+                .withRequestBody(containing(".sort({\"$desc\":[\"modified\"]}).limit(1)")));
+    }
+
+    @Test
+    void shouldFindNoMatch() throws Exception {
+        stubFor(post(urlPathEqualTo("/api/search/aql")).willReturn(okJson("{\"results\":[]}")));
+
+        assertNull(client.findLatest("jenkins/job", "cache-*.tgz"));
+    }
+
+    /**
+     * Stub the info search of a path
+     * @param path the path
+     * @param fields the JSON fields of the item besides its path and name, or null if the path doesn't exist
+     */
+    static void stubInfo(String path, String fields) {
+        int slash = path.lastIndexOf('/');
+        String item = fields != null
+                ? String.format(
+                        "{\"path\":\"%s\",\"name\":\"%s\",%s}",
+                        path.substring(0, slash), path.substring(slash + 1), fields)
+                : "";
+        // Above the listing stubs, which search the same endpoint
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .atPriority(1)
+                .withRequestBody(containing(infoCriteria(path)))
+                .willReturn(okJson("{\"results\":[" + item + "]}")));
+    }
+
+    /**
+     * @param path the path
+     * @return the pattern of the info search of the path
+     */
+    static RequestPatternBuilder infoRequestedFor(String path) {
+        return postRequestedFor(urlPathEqualTo("/api/search/aql")).withRequestBody(containing(infoCriteria(path)));
+    }
+
+    private static String infoCriteria(String path) {
+        int slash = path.lastIndexOf('/');
+        return String.format(
+                "\"path\":\"%s\",\"name\":\"%s\",\"type\":\"any\"",
+                path.substring(0, slash), path.substring(slash + 1));
+    }
+}
@@ -0,0 +1,52 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArtifactoryCodecTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void shouldRoundTripWithEachCodec() throws Exception {
+        String content = "cache content ".repeat(10_000);
+        File source = Files.writeString(tempDir.resolve("cache.tgz"), content, StandardCharsets.UTF_8)
+                .toFile();
+        for (ArtifactoryCodec codec : ArtifactoryCodec.values()) {
+            File compressed = tempDir.resolve("cache." + codec.getId()).toFile();
+            File restored = tempDir.resolve("restored-" + codec.getId()).toFile();
+            codec.compress(source, compressed, 9);
+            codec.decompress(compressed, restored);
+            assertEquals(content, Files.readString(restored.toPath(), StandardCharsets.UTF_8), codec.getId());
+            if (codec != ArtifactoryCodec.NONE) {
+                assertTrue(compressed.length() < source.length() / 10, codec.getId());
+            }
+        }
+    }
+
+    @Test
+    void shouldReadCodecFromProperties() throws Exception {
+        assertEquals(ArtifactoryCodec.NONE, ArtifactoryCodec.fromProperties(Map.of()));
+        assertEquals(ArtifactoryCodec.LZ4, ArtifactoryCodec.fromProperties(ArtifactoryCodec.LZ4.toProperties(0)));
+        assertEquals("3", ArtifactoryCodec.GZIP.toProperties(3).get(ArtifactoryCodec.LEVEL_PROPERTY));
+        assertThrows(
+                IOException.class,
+                () -> ArtifactoryCodec.fromProperties(Map.of(ArtifactoryCodec.CODEC_PROPERTY, "brotli")));
+    }
+
+    @Test
+    void shouldDefaultToNoCompression() {
+        assertEquals(ArtifactoryCodec.NONE, ArtifactoryCodec.of(null));
+        assertEquals(ArtifactoryCodec.NONE, ArtifactoryCodec.of("unknown"));
+        assertEquals(ArtifactoryCodec.GZIP, ArtifactoryCodec.of(" GZIP "));
+    }
+}
@@ -0,0 +1,109 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import java.io.IOException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@WireMockTest
+class ArtifactoryDeleterTest {
+
+    private ArtifactoryClient client;
+
+    @BeforeEach
+    void setUp(WireMockRuntimeInfo wireMock) {
+        ArtifactoryMetadataCache.get().clear();
+        client = new ArtifactoryClient(
+                ArtifactoryClientPoolTest.config(wireMock.getHttpBaseUrl(), "user", "password"));
+        ArtifactoryClientTest.stubInfo("jenkins/job", "\"type\":\"folder\"");
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":["
+                        + "{\"path\":\"jenkins/job\",\"name\":\"a.tgz\"},"
+                        + "{\"path\":\"jenkins/job/sub\",\"name\":\"b.tgz\"},"
+                        + "{\"path\":\"jenkins/job/sub\",\"name\":\"c.tgz\"}]}")));
+    }
+
+    @Test
+    void shouldDeleteFilesInParallelThenFolder() throws Exception {
+        stubFor(delete(urlPathMatching("/my-generic-repo/jenkins/job.*")).willReturn(noContent()));
+        // c.tgz fails once then is retried
+        stubFor(delete(urlPathEqualTo("/my-generic-repo/jenkins/job/sub/c.tgz"))
+                .inScenario("retry")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(serverError())
+                .willSetStateTo("failed"));
+        stubFor(delete(urlPathEqualTo("/my-generic-repo/jenkins/job/sub/c.tgz"))
+                .inScenario("retry")
+                .whenScenarioStateIs("failed")
+                .willReturn(noContent()));
+
+        new ArtifactoryDeleter(client, 2, 0).delete("jenkins/job");
+
+        verify(1, deleteRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/job/a.tgz")));
+        verify(1, deleteRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/job/sub/b.tgz")));
+        verify(2, deleteRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/job/sub/c.tgz")));
+        verify(1, deleteRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/job")));
+    }
+
+    @Test
+    void shouldKeepFolderWhenFilesCannotBeDeleted() throws Exception {
+        stubFor(delete(urlPathMatching("/my-generic-repo/jenkins/job.*")).willReturn(noContent()));
+        stubFor(delete(urlPathEqualTo("/my-generic-repo/jenkins/job/a.tgz")).willReturn(serverError()));
+
+        assertThrows(IOException.class, () -> new ArtifactoryDeleter(client, 2, 0).delete("jenkins/job"));
+
+        verify(3, deleteRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/job/a.tgz")));
+        verify(0, deleteRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/job")));
+    }
+
+    @Test
+    void shouldDeleteFilesOfEveryPage() throws Exception {
+        int count = ArtifactoryClient.LIST_PAGE_SIZE + 1;
+        StringBuilder first = new StringBuilder("{\"results\":[");
+        for (int i = 0; i < ArtifactoryClient.LIST_PAGE_SIZE; i++) {
+            first.append(i > 0 ? "," : "")
+                    .append(String.format("{\"path\":\"jenkins/job\",\"name\":\"%05d.tgz\"}", i));
+        }
+        String last = String.format(
+                "{\"results\":[{\"path\":\"jenkins/job\",\"name\":\"%05d.tgz\"}]}", count - 1);
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .withRequestBody(containing(".offset(0)"))
+                .willReturn(okJson(first.append("]}").toString())));
+        // Once files are deleted, the second page starts further in the remaining files, as the server would do
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .inScenario("paging")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .withRequestBody(containing(".offset(" + ArtifactoryClient.LIST_PAGE_SIZE + ")"))
+                .willReturn(okJson(last)));
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .inScenario("paging")
+                .whenScenarioStateIs("deleting")
+                .withRequestBody(containing(".offset(" + ArtifactoryClient.LIST_PAGE_SIZE + ")"))
+                .willReturn(okJson("{\"results\":[]}")));
+        stubFor(delete(urlPathMatching("/my-generic-repo/jenkins/job.*"))
+                .inScenario("paging")
+                .willReturn(noContent())
+                .willSetStateTo("deleting"));
+
+        new ArtifactoryDeleter(client, 4, 0).delete("jenkins/job");
+
+        verify(count, deleteRequestedFor(urlPathMatching("/my-generic-repo/jenkins/job/.*")));
+        verify(1, deleteRequestedFor(urlPathEqualTo(
+                String.format("/my-generic-repo/jenkins/job/%05d.tgz", count - 1))));
+    }
+
+    @Test
+    void shouldDeleteFolderWithSingleRequestByDefault() throws Exception {
+        stubFor(delete(urlPathEqualTo("/my-generic-repo/jenkins/job")).willReturn(noContent()));
+
+        new ArtifactoryDeleter(client, new ArtifactoryTransferSettings()).delete("jenkins/job");
+
+        verify(1, deleteRequestedFor(urlPathMatching("/my-generic-repo/.*")));
+        verify(0, postRequestedFor(urlPathEqualTo("/api/search/aql")));
+    }
+}
@@ -0,0 +1,107 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@WireMockTest
+class ArtifactoryDownloaderTest {
+
+    private static final String ARTIFACT_URL = "/my-generic-repo/jenkins/job/cache.tgz";
+
+    private static final int MB = 1024 * 1024;
+
+    @TempDir
+    private Path tempDir;
+
+    private ArtifactoryClient client;
+    private ArtifactoryTransferSettings settings;
+    private byte[] content;
+    private ArtifactoryItemInfo info;
+
+    @BeforeEach
+    void setUp(WireMockRuntimeInfo wireMock) {
+        ArtifactoryMetadataCache.get().clear();
+        client = new ArtifactoryClient(
+                ArtifactoryClientPoolTest.config(wireMock.getHttpBaseUrl(), "user", "password"));
+        settings = new ArtifactoryTransferSettings();
+        settings.setDownloadChunkSizeMb(1);
+        settings.setDownloadParallelism(3);
+        // Three ranges, the last one shorter
+        content = new byte[2 * MB + MB / 2];
+        new Random(42).nextBytes(content);
+        // No codec property
+        info = new ArtifactoryItemInfo("jenkins/job/cache.tgz", false, content.length, 0, null, 0, Map.of());
+    }
+
+    @Test
+    void shouldDownloadRangesConcurrently() throws Exception {
+        stubRange(0, MB - 1);
+        stubRange(MB, 2 * MB - 1);
+        stubRange(2 * MB, content.length - 1);
+        File target = tempDir.resolve("cache.tgz").toFile();
+        long downloaded = ArtifactoryMetrics.get().getDownloadedBytes();
+
+        new ArtifactoryDownloader(client, settings).download("jenkins/job/cache.tgz", target, info);
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertEquals(downloaded + content.length, ArtifactoryMetrics.get().getDownloadedBytes());
+        verify(3, getRequestedFor(urlPathEqualTo(ARTIFACT_URL)));
+        verify(getRequestedFor(urlPathEqualTo(ARTIFACT_URL)).withHeader("Range", equalTo("bytes=0-1048575")));
+        verify(getRequestedFor(urlPathEqualTo(ARTIFACT_URL)).withHeader("Range", equalTo("bytes=1048576-2097151")));
+        verify(getRequestedFor(urlPathEqualTo(ARTIFACT_URL)).withHeader("Range", equalTo("bytes=2097152-2621439")));
+
+        // The codec came with the info
+        verify(0, postRequestedFor(urlPathEqualTo("/api/search/aql")));
+    }
+
+    @Test
+    void shouldFallBackToSingleStreamWhenRangesAreIgnored() throws Exception {
+        stubFor(get(urlPathEqualTo(ARTIFACT_URL)).willReturn(ok().withBody(content)));
+        File target = tempDir.resolve("cache.tgz").toFile();
+
+        new ArtifactoryDownloader(client, settings).download("jenkins/job/cache.tgz", target, info);
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        // The probe only, then the whole content at once
+        verify(1, getRequestedFor(urlPathEqualTo(ARTIFACT_URL)).withHeader("Range", matching("bytes=.*")));
+        verify(1, getRequestedFor(urlPathEqualTo(ARTIFACT_URL)).withHeader("Range", absent()));
+    }
+
+    @Test
+    void shouldFailOnRangeError() {
+        stubRange(0, MB - 1);
+        stubRange(MB, 2 * MB - 1);
+        stubFor(get(urlPathEqualTo(ARTIFACT_URL))
+                .withHeader("Range", equalTo("bytes=2097152-2621439"))
+                .willReturn(serverError()));
+        File target = tempDir.resolve("cache.tgz").toFile();
+
+        assertThrows(
+                IOException.class,
+                () -> new ArtifactoryDownloader(client, settings).download("jenkins/job/cache.tgz", target, info));
+        // An error is not a server ignoring ranges, so the whole content is never downloaded
+        verify(0, getRequestedFor(urlPathEqualTo(ARTIFACT_URL)).withHeader("Range", absent()));
+    }
+
+    private void stubRange(int start, int end) {
+        stubFor(get(urlPathEqualTo(ARTIFACT_URL))
+                .withHeader("Range", equalTo(String.format("bytes=%d-%d", start, end)))
+                .willReturn(aResponse()
+                        .withStatus(206)
+                        .withHeader("Content-Range", String.format("bytes %d-%d/%d", start, end, content.length))
+                        .withBody(Arrays.copyOfRange(content, start, end + 1))));
+    }
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import java.io.IOException;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -15,6 +16,10 @@ class ArtifactoryItemPathTest {
     @BeforeEach
     void setUp() {
         client = mock(ArtifactoryClient.class);
+        // Keys the saves coordinated on the controller
+        doReturn(new ArtifactoryClient.ArtifactoryConfig("http://localhost", "repo", "user", null))
+                .when(client)
+                .getConfig();
         itemPath = new ArtifactoryItemPath(client, "fullName", "path");
     }
 
@@ -28,20 +33,68 @@ class ArtifactoryItemPathTest {
 
     @Test
     void testExists() throws IOException, InterruptedException {
-        doReturn(false).when(client).isFile(anyString());
-        doReturn(true).when(client).isFile("fullName/path");
+        doReturn(null).when(client).info(anyString());
+        doReturn(new ArtifactoryItemInfo("fullName/path", false, 10, 0, null))
+                .when(client)
+                .info("fullName/path");
         assertTrue(itemPath.exists());
-        verify(client, times(1)).isFile(anyString());
+        assertTrue(itemPath.exists());
+        assertEquals(10, itemPath.getInfo().getSize());
+        verify(client, times(1)).info(anyString());
         verifyNoMoreInteractions(client);
     }
 
+    @Test
+    void testNotExists() throws IOException, InterruptedException {
+        doReturn(new ArtifactoryItemInfo("fullName/path", true, 0, 0, null))
+                .when(client)
+                .info("fullName/path");
+        assertFalse(itemPath.exists());
+    }
+
+    @Test
+    void testRestoreKeys() throws IOException, InterruptedException {
+        ArtifactoryTransferSettings settings = new ArtifactoryTransferSettings();
+        settings.setRestoreKeys(List.of("other-", "caches/maven-linux-", "caches/maven-"));
+        itemPath = new ArtifactoryItemPath(client, "fullName", "caches/maven-linux-abc.tgz", settings);
+        doReturn(null).when(client).info(anyString());
+        doReturn(null).when(client).findLatest("fullName/caches", "maven-linux-*.tgz");
+        doReturn(new ArtifactoryItemInfo("fullName/caches/maven-windows-def.tgz", false, 10, 0, null))
+                .when(client)
+                .findLatest("fullName/caches", "maven-*.tgz");
+        assertTrue(itemPath.exists());
+        assertEquals("fullName/caches/maven-windows-def.tgz", itemPath.resolveRestoreKeys());
+        // Keys that are not a prefix of the path are skipped, and each key is searched once
+        verify(client, times(2)).findLatest(anyString(), anyString());
+    }
+
+    @Test
+    void testRestoreKeysNoMatch() throws IOException, InterruptedException {
+        ArtifactoryTransferSettings settings = new ArtifactoryTransferSettings();
+        settings.setRestoreKeys(List.of("cache-"));
+        itemPath = new ArtifactoryItemPath(client, "fullName", "cache-abc.tgz", settings);
+        doReturn(null).when(client).info(anyString());
+        assertFalse(itemPath.exists());
+        verify(client).findLatest("fullName", "cache-*.tgz");
+    }
+
     @Test
     void testDelete() throws IOException, InterruptedException {
         itemPath.deleteRecursive();
         verify(client, times(1)).deleteArtifact("fullName/path");
+        verify(client).isFolder("fullName/path.parts");
+        verify(client, atLeastOnce()).getConfig();
         verifyNoMoreInteractions(client);
     }
 
+    @Test
+    void testDeleteParts() throws IOException, InterruptedException {
+        doReturn(true).when(client).isFolder("fullName/path.parts");
+        itemPath.deleteRecursive();
+        verify(client, times(1)).deleteArtifact("fullName/path");
+        verify(client, times(1)).deleteArtifact("fullName/path.parts");
+    }
+
     @Test
     void testGetFullName() {
         assertEquals("fullName", itemPath.getFullName());
@@ -0,0 +1,54 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArtifactoryLocalCacheTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void shouldRestoreStoredArchive() throws Exception {
+        Path downloaded = Files.writeString(tempDir.resolve("downloaded.tgz"), "content", StandardCharsets.UTF_8);
+        String sha256 = ArtifactoryChecksums.compute(downloaded).getSha256();
+        ArtifactoryLocalCache cache = new ArtifactoryLocalCache(tempDir.resolve("store"), 1024);
+
+        Path target = tempDir.resolve("restored.tgz");
+        assertFalse(cache.restore(sha256, target));
+        cache.store(sha256, downloaded);
+        assertTrue(cache.restore(sha256, target));
+        assertEquals("content", Files.readString(target, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedArchives() throws Exception {
+        Path store = tempDir.resolve("store");
+        ArtifactoryLocalCache cache = new ArtifactoryLocalCache(store, 10);
+
+        Path first = Files.writeString(tempDir.resolve("first.tgz"), "123456", StandardCharsets.UTF_8);
+        String firstSha256 = ArtifactoryChecksums.compute(first).getSha256();
+        cache.store(firstSha256, first);
+        Files.setLastModifiedTime(store.resolve(firstSha256), FileTime.fromMillis(0));
+
+        Path second = Files.writeString(tempDir.resolve("second.tgz"), "abcdef", StandardCharsets.UTF_8);
+        String secondSha256 = ArtifactoryChecksums.compute(second).getSha256();
+        cache.store(secondSha256, second);
+
+        assertFalse(Files.exists(store.resolve(firstSha256)));
+        assertTrue(Files.exists(store.resolve(secondSha256)));
+    }
+
+    @Test
+    void shouldIgnoreInvalidChecksums() {
+        ArtifactoryLocalCache cache = new ArtifactoryLocalCache(tempDir.resolve("store"), 1024);
+        assertFalse(cache.restore("../../etc/passwd", tempDir.resolve("restored.tgz")));
+        assertFalse(cache.restore(null, tempDir.resolve("restored.tgz")));
+    }
+}
@@ -0,0 +1,63 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArtifactoryManifestTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void shouldReadWrittenManifest() throws Exception {
+        ArtifactoryManifest manifest = new ArtifactoryManifest(
+                15,
+                List.of(
+                        new ArtifactoryManifest.Segment("cache.tgz.parts/id/00000", 0, 10, "sha1"),
+                        new ArtifactoryManifest.Segment("cache.tgz.parts/id/00001", 10, 5, null)));
+        File file = Files.writeString(tempDir.resolve("cache.tgz"), manifest.toJson(), StandardCharsets.UTF_8)
+                .toFile();
+
+        assertTrue(ArtifactoryManifest.isManifest(file));
+        ArtifactoryManifest read = ArtifactoryManifest.read(file);
+        assertEquals(15, read.getSize());
+        assertEquals(2, read.getSegments().size());
+        assertEquals("cache.tgz.parts/id/00001", read.getSegments().get(1).getPath());
+        assertEquals(10, read.getSegments().get(1).getOffset());
+        assertEquals(5, read.getSegments().get(1).getSize());
+        assertEquals("sha1", read.getSegments().get(0).getSha1());
+    }
+
+    @Test
+    void shouldResolvePartsAgainstManifestPath() throws Exception {
+        ArtifactoryManifest manifest = new ArtifactoryManifest(
+                15,
+                List.of(
+                        ArtifactoryManifest.Segment.part("id/00000", 0, 10, "sha1"),
+                        new ArtifactoryManifest.Segment("jenkins/.chunks/ab/ab12", 10, 5, "ab12")));
+        File file = Files.writeString(tempDir.resolve("cache.tgz"), manifest.toJson(), StandardCharsets.UTF_8)
+                .toFile();
+
+        ArtifactoryManifest read = ArtifactoryManifest.read(file);
+        assertTrue(read.getSegments().get(0).isPart());
+        assertEquals(
+                "jenkins/renamed/cache.tgz.parts/id/00000",
+                read.getSegments().get(0).resolve("jenkins/renamed/cache.tgz"));
+        assertFalse(read.getSegments().get(1).isPart());
+        assertEquals("jenkins/.chunks/ab/ab12", read.getSegments().get(1).resolve("jenkins/renamed/cache.tgz"));
+    }
+
+    @Test
+    void shouldNotDetectArchiveAsManifest() throws Exception {
+        File file = Files.writeString(tempDir.resolve("cache.tgz"), "not a manifest", StandardCharsets.UTF_8)
+                .toFile();
+        assertFalse(ArtifactoryManifest.isManifest(file));
+    }
+}
@@ -0,0 +1,86 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ArtifactoryMetadataCacheTest {
+
+    private static final ArtifactoryItemInfo INFO = new ArtifactoryItemInfo("jenkins/job/cache.tgz", false, 1, 0, null);
+
+    @Test
+    void shouldCacheAnswersUntilInvalidated() throws Exception {
+        ArtifactoryMetadataCache cache = new ArtifactoryMetadataCache(60_000L, 10);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertSame(INFO, cache.get("server|repo|jenkins/job/cache.tgz", () -> load(loads)));
+        assertSame(INFO, cache.get("server|repo|jenkins/job/cache.tgz", () -> load(loads)));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.invalidate("server|repo|jenkins/job");
+        cache.get("server|repo|jenkins/job/cache.tgz", () -> load(loads));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldCacheMissingItems() throws Exception {
+        ArtifactoryMetadataCache cache = new ArtifactoryMetadataCache(60_000L, 10);
+        assertNull(cache.get("server|repo|missing", () -> null));
+        assertNull(cache.get("server|repo|missing", () -> fail("Should be cached")));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void shouldEvictEldestEntries() throws Exception {
+        ArtifactoryMetadataCache cache = new ArtifactoryMetadataCache(60_000L, 2);
+        cache.get("a", () -> INFO);
+        cache.get("b", () -> INFO);
+        cache.get("c", () -> INFO);
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void shouldCoalesceConcurrentLookups() throws Exception {
+        ArtifactoryMetadataCache cache = new ArtifactoryMetadataCache(60_000L, 10);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ArtifactoryItemInfo> first = executor.submit(() -> cache.get("key", () -> {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return load(loads);
+            }));
+            loading.await();
+            Future<ArtifactoryItemInfo> second = executor.submit(() -> cache.get("key", () -> load(loads)));
+            while (cache.getCoalesced() == 0) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            assertSame(INFO, first.get());
+            assertSame(INFO, second.get());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ArtifactoryItemInfo load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return INFO;
+    }
+}
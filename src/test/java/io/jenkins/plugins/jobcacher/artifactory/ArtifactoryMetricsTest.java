@@ -0,0 +1,73 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class ArtifactoryMetricsTest {
+
+    @Test
+    void shouldRecordOperationsPerJob() {
+        ArtifactoryMetrics metrics = new ArtifactoryMetrics(10);
+        metrics.record("jenkins/job", ArtifactoryMetrics.COPY_FROM, 100, TimeUnit.MILLISECONDS.toNanos(20), false);
+        metrics.record("jenkins/job", ArtifactoryMetrics.COPY_FROM, 300, TimeUnit.MILLISECONDS.toNanos(40), true);
+        metrics.record("jenkins/other", ArtifactoryMetrics.COPY_FROM, 50, TimeUnit.MILLISECONDS.toNanos(1), false);
+
+        ArtifactoryMetrics.Stats job = metrics.getStats("jenkins/job", ArtifactoryMetrics.COPY_FROM);
+        assertEquals(2, job.getCount());
+        assertEquals(1, job.getErrors());
+        assertEquals(400, job.getBytes());
+        assertEquals(30, job.getMeanMillis());
+        assertEquals(6_666, job.getThroughput());
+
+        ArtifactoryMetrics.Stats total = metrics.getTotal(ArtifactoryMetrics.COPY_FROM);
+        assertEquals(3, total.getCount());
+        assertEquals(450, total.getBytes());
+        assertNull(metrics.getStats("jenkins/job", ArtifactoryMetrics.COPY_TO));
+    }
+
+    @Test
+    void shouldEstimatePercentilesFromHistogram() {
+        ArtifactoryMetrics metrics = new ArtifactoryMetrics(10);
+        for (int i = 0; i < 99; i++) {
+            metrics.record(null, ArtifactoryMetrics.CLIENT_INFO, 0, TimeUnit.MILLISECONDS.toNanos(3), false);
+        }
+        metrics.record(null, ArtifactoryMetrics.CLIENT_INFO, 0, TimeUnit.MILLISECONDS.toNanos(700), false);
+
+        ArtifactoryMetrics.Stats stats = metrics.getTotal(ArtifactoryMetrics.CLIENT_INFO);
+        assertEquals(5, stats.getPercentileMillis(0.5));
+        assertEquals(5, stats.getPercentileMillis(0.99));
+        assertEquals(700, stats.getPercentileMillis(1));
+        assertEquals(700, stats.getMaxMillis());
+    }
+
+    @Test
+    void shouldBoundTrackedJobs() {
+        ArtifactoryMetrics metrics = new ArtifactoryMetrics(1);
+        metrics.record("first", ArtifactoryMetrics.COPY_TO, 1, 1, false);
+        metrics.record("second", ArtifactoryMetrics.COPY_TO, 1, 1, false);
+
+        assertNotNull(metrics.getStats("first", ArtifactoryMetrics.COPY_TO));
+        assertNull(metrics.getStats("second", ArtifactoryMetrics.COPY_TO));
+        assertEquals(1, metrics.getStats(ArtifactoryMetrics.OTHER_JOBS, ArtifactoryMetrics.COPY_TO).getCount());
+    }
+
+    @Test
+    void shouldRecordFailedTimers() {
+        ArtifactoryMetrics metrics = new ArtifactoryMetrics(10);
+        try (ArtifactoryMetrics.Timer timer = metrics.start("job", ArtifactoryMetrics.DELETE)) {
+            assertNotNull(timer);
+        }
+        try (ArtifactoryMetrics.Timer timer = metrics.start("job", ArtifactoryMetrics.COPY_TO)) {
+            timer.succeeded(42);
+        }
+        assertEquals(1, metrics.getStats("job", ArtifactoryMetrics.DELETE).getErrors());
+        assertEquals(0, metrics.getStats("job", ArtifactoryMetrics.COPY_TO).getErrors());
+
+        JSONObject json = metrics.toJson();
+        assertEquals(42, json.getJSONObject("jobs").getJSONObject("job").getJSONObject("copyTo").getLong("bytes"));
+        assertFalse(json.getJSONObject("operations").has(ArtifactoryMetrics.CLIENT_INFO));
+    }
+}
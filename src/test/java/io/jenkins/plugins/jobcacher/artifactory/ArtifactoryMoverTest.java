@@ -0,0 +1,170 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@WireMockTest
+class ArtifactoryMoverTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private ArtifactoryClient client;
+
+    @BeforeEach
+    void setUp(WireMockRuntimeInfo wireMock) {
+        ArtifactoryMetadataCache.get().clear();
+        client = new ArtifactoryClient(
+                ArtifactoryClientPoolTest.config(wireMock.getHttpBaseUrl(), "user", "password"));
+    }
+
+    @Test
+    void shouldMoveFileByFileWithoutMoveApi() throws Exception {
+        stubFor(post(urlPathMatching("/api/move/.*"))
+                .willReturn(badRequest()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"errors\":[{\"status\":400,"
+                                + "\"message\":\"This REST API is available only in Artifactory Pro\"}]}")));
+        ArtifactoryClientTest.stubInfo("jenkins/old", "\"type\":\"folder\"");
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":["
+                        + "{\"repo\":\"my-generic-repo\",\"path\":\"jenkins/old\",\"name\":\"a.tgz\",\"type\":\"file\"},"
+                        + "{\"repo\":\"my-generic-repo\",\"path\":\"jenkins/old\",\"name\":\"b.tgz\",\"type\":\"file\"},"
+                        + "{\"repo\":\"my-generic-repo\",\"path\":\"jenkins/old2\",\"name\":\"c.tgz\",\"type\":\"file\"}"
+                        + "],\"range\":{\"start_pos\":0,\"end_pos\":3,\"total\":3}}")));
+        stubFile("a.tgz", "aaa");
+        stubFile("b.tgz", "bbb");
+        // a.tgz content is known by Artifactory, b.tgz content isn't
+        stubFor(put(urlPathEqualTo("/my-generic-repo/jenkins/new/a.tgz"))
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(created()));
+        stubFor(put(urlPathEqualTo("/my-generic-repo/jenkins/new/b.tgz"))
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(notFound()));
+        stubFor(put(urlPathEqualTo("/my-generic-repo/jenkins/new/b.tgz"))
+                .withHeader("X-Checksum-Deploy", absent())
+                .willReturn(created()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"repo\":\"my-generic-repo\",\"path\":\"/jenkins/new/b.tgz\"}")));
+        stubFor(get(urlPathEqualTo("/my-generic-repo/jenkins/old/b.tgz")).willReturn(ok("content-b")));
+        stubFor(delete(urlPathEqualTo("/my-generic-repo/jenkins/old")).willReturn(noContent()));
+
+        AtomicInteger progress = new AtomicInteger();
+        new ArtifactoryMover(client, 2, (source, done, total) -> {
+                    assertEquals(2, total);
+                    progress.incrementAndGet();
+                })
+                .move("jenkins/old", "jenkins/new");
+
+        assertEquals(2, progress.get());
+        verify(putRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/new/b.tgz"))
+                .withHeader("X-Checksum-Deploy", absent())
+                .withRequestBody(equalTo("content-b")));
+        verify(0, getRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/old/a.tgz")));
+        verify(0, getRequestedFor(urlPathMatching(".*/jenkins/old2/.*")));
+        verify(1, deleteRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/old")));
+    }
+
+    @Test
+    void shouldUseMoveApiWhenAvailable() throws Exception {
+        stubFor(post(urlPathMatching("/api/move/.*"))
+                .willReturn(okJson("{\"messages\":[{\"level\":\"INFO\",\"message\":\"move successful\"}]}")));
+
+        new ArtifactoryMover(client, 2, (source, done, total) -> fail("Should not copy"))
+                .move("jenkins/old", "jenkins/new");
+
+        verify(1, postRequestedFor(urlPathMatching("/api/move/.*")));
+        verify(0, postRequestedFor(urlPathEqualTo("/api/search/aql")));
+    }
+
+    @Test
+    void shouldNotMoveToItselfOrBelow() throws Exception {
+        ArtifactoryMover mover = new ArtifactoryMover(client, 2, (source, done, total) -> fail("Should not copy"));
+
+        mover.move("jenkins/old", "jenkins/old");
+        assertThrows(IOException.class, () -> mover.move("jenkins/old", "jenkins/old/sub"));
+
+        verify(0, postRequestedFor(anyUrl()));
+        verify(0, deleteRequestedFor(anyUrl()));
+    }
+
+    @Test
+    void shouldRestoreMultipartCacheAfterMove() throws Exception {
+        String manifest = new ArtifactoryManifest(
+                        6,
+                        List.of(
+                                ArtifactoryManifest.Segment.part("id/00000", 0, 3, null),
+                                ArtifactoryManifest.Segment.part("id/00001", 3, 3, null)))
+                .toJson();
+        stubFor(post(urlPathMatching("/api/move/.*"))
+                .willReturn(badRequest()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"errors\":[{\"status\":400,"
+                                + "\"message\":\"This REST API is available only in Artifactory Pro\"}]}")));
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":["
+                        + "{\"path\":\"jenkins/old\",\"name\":\"cache.tgz\",\"type\":\"file\"},"
+                        + "{\"path\":\"jenkins/old/cache.tgz.parts/id\",\"name\":\"00000\",\"type\":\"file\"},"
+                        + "{\"path\":\"jenkins/old/cache.tgz.parts/id\",\"name\":\"00001\",\"type\":\"file\"}"
+                        + "]}")));
+        stubStored("cache.tgz", manifest);
+        stubStored("cache.tgz.parts/id/00000", "abc");
+        stubStored("cache.tgz.parts/id/00001", "def");
+        stubFor(put(urlPathMatching("/my-generic-repo/jenkins/new/.*"))
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(notFound()));
+        stubFor(put(urlPathMatching("/my-generic-repo/jenkins/new/.*"))
+                .withHeader("X-Checksum-Deploy", absent())
+                .willReturn(created()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"repo\":\"my-generic-repo\",\"path\":\"/jenkins/new/cache.tgz\"}")));
+        stubFor(delete(urlPathEqualTo("/my-generic-repo/jenkins/old")).willReturn(noContent()));
+
+        new ArtifactoryMover(client, 2, (source, done, total) -> {}).move("jenkins/old", "jenkins/new");
+
+        // Serve the moved files from their new path only
+        verify(putRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/new/cache.tgz"))
+                .withRequestBody(equalTo(manifest)));
+        stubFor(get(urlPathMatching("/my-generic-repo/jenkins/old/.*")).willReturn(notFound()));
+        ArtifactoryClientTest.stubInfo("jenkins/new/cache.tgz", null);
+        stubFor(get(urlPathEqualTo("/my-generic-repo/jenkins/new/cache.tgz")).willReturn(ok(manifest)));
+        stubFor(get(urlPathEqualTo("/my-generic-repo/jenkins/new/cache.tgz.parts/id/00000"))
+                .willReturn(ok("abc")));
+        stubFor(get(urlPathEqualTo("/my-generic-repo/jenkins/new/cache.tgz.parts/id/00001"))
+                .willReturn(ok("def")));
+        File target = tempDir.resolve("cache.tgz").toFile();
+
+        new ArtifactoryDownloader(client, new ArtifactoryTransferSettings())
+                .download("jenkins/new/cache.tgz", target, null);
+
+        assertEquals("abcdef", Files.readString(target.toPath(), StandardCharsets.UTF_8));
+    }
+
+    private static void stubStored(String name, String content) {
+        ArtifactoryClientTest.stubInfo(
+                "jenkins/old/" + name,
+                "\"type\":\"file\",\"size\":" + content.length() + ",\"modified\":\"2024-01-02T10:11:12.345Z\","
+                        + "\"actual_sha1\":\"" + name + "\",\"sha256\":\"" + name + "\"");
+        stubFor(get(urlPathEqualTo("/my-generic-repo/jenkins/old/" + name)).willReturn(ok(content)));
+    }
+
+    private static void stubFile(String name, String sha1) {
+        ArtifactoryClientTest.stubInfo(
+                "jenkins/old/" + name,
+                "\"type\":\"file\",\"size\":9,\"modified\":\"2024-01-02T10:11:12.345Z\","
+                        + "\"actual_sha1\":\"" + sha1 + "\",\"sha256\":\"" + sha1 + "\"");
+    }
+}
@@ -0,0 +1,130 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArtifactoryOperationQueueTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void shouldCoalescePendingOperations() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> done = new CopyOnWriteArrayList<>();
+        ArtifactoryOperationQueue queue = new ArtifactoryOperationQueue(queueFile(), 1, op -> {
+            running.countDown();
+            release.await();
+            done.add(op.toString());
+        });
+
+        queue.delete("jenkins/blocking");
+        running.await();
+        queue.move("jenkins/a", "jenkins/b");
+        queue.move("jenkins/b", "jenkins/c");
+        queue.delete("jenkins/removed/job");
+        queue.delete("jenkins/removed");
+
+        List<ArtifactoryOperationQueue.Operation> pending = queue.getPending();
+        assertEquals(3, pending.size());
+        assertEquals("jenkins/c", pending.get(1).getTarget());
+        assertEquals("jenkins/removed", pending.get(2).getPath());
+
+        release.countDown();
+        awaitEmpty(queue);
+        assertEquals(
+                List.of(
+                        "deletion of jenkins/blocking",
+                        "move of jenkins/a to jenkins/c",
+                        "deletion of jenkins/removed"),
+                done);
+    }
+
+    @Test
+    void shouldDropRenameBackToOriginalPath() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> done = new CopyOnWriteArrayList<>();
+        ArtifactoryOperationQueue queue = new ArtifactoryOperationQueue(queueFile(), 1, op -> {
+            running.countDown();
+            release.await();
+            done.add(op.toString());
+        });
+
+        queue.delete("jenkins/blocking");
+        running.await();
+        queue.move("jenkins/a", "jenkins/b");
+        queue.move("jenkins/b", "jenkins/a");
+
+        assertEquals(1, queue.getPending().size());
+        release.countDown();
+        awaitEmpty(queue);
+        assertEquals(List.of("deletion of jenkins/blocking"), done);
+    }
+
+    @Test
+    void shouldDeleteSourceOfMovedThenDeletedItem() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ArtifactoryOperationQueue queue = new ArtifactoryOperationQueue(queueFile(), 1, op -> {
+            running.countDown();
+            release.await();
+        });
+        queue.delete("jenkins/blocking");
+        running.await();
+        queue.move("jenkins/a", "jenkins/b");
+        queue.delete("jenkins/b");
+
+        assertTrue(queue.getPending().stream()
+                .anyMatch(op -> op.getType() == ArtifactoryOperationQueue.Type.DELETE
+                        && op.getPath().equals("jenkins/a")));
+        assertTrue(queue.getPending().stream().noneMatch(op -> op.getType() == ArtifactoryOperationQueue.Type.MOVE));
+        release.countDown();
+        awaitEmpty(queue);
+    }
+
+    @Test
+    void shouldKeepFailedOperationsAcrossRestarts() throws Exception {
+        File file = queueFile();
+        ArtifactoryOperationQueue queue = new ArtifactoryOperationQueue(file, 1, op -> {
+            throw new IOException("Unavailable");
+        });
+        queue.delete("jenkins/job");
+        while (queue.getRetried() == 0) {
+            Thread.sleep(10);
+        }
+
+        ArtifactoryOperationQueue restarted = new ArtifactoryOperationQueue(file, 1, op -> {});
+        restarted.load();
+        List<ArtifactoryOperationQueue.Operation> pending = restarted.getPending();
+        assertEquals(1, pending.size());
+        assertEquals("jenkins/job", pending.get(0).getPath());
+        assertEquals(1, pending.get(0).getAttempts());
+    }
+
+    @Test
+    void shouldBackoffExponentially() {
+        assertEquals(1_000, ArtifactoryOperationQueue.backoff(1));
+        assertEquals(8_000, ArtifactoryOperationQueue.backoff(4));
+        assertEquals(ArtifactoryOperationQueue.MAX_BACKOFF_MS, ArtifactoryOperationQueue.backoff(30));
+    }
+
+    private File queueFile() {
+        return tempDir.resolve("queue.xml").toFile();
+    }
+
+    private static void awaitEmpty(ArtifactoryOperationQueue queue) throws InterruptedException {
+        while (queue.getDepth() > 0) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class ArtifactoryRetentionTest {
+
+    private static final long NOW = TimeUnit.DAYS.toMillis(100);
+
+    @Test
+    void shouldGroupPartsWithTheirManifest() {
+        List<ArtifactoryRetention.Entry> entries = ArtifactoryRetention.group(
+                "jenkins",
+                Stream.of(
+                        file("jenkins/folder/job/cache.tgz", 10, 1, 0),
+                        file("jenkins/folder/job/cache.tgz.parts/uuid/00000", 100, 2, 0),
+                        file("jenkins/folder/job/cache.tgz.parts/uuid/00001", 50, 3, 0),
+                        file("jenkins/.staging/upload", 10, 1, 0),
+                        file("jenkins/root.tgz", 10, 1, 0)));
+
+        assertEquals(1, entries.size());
+        ArtifactoryRetention.Entry entry = entries.get(0);
+        assertEquals("jenkins/folder/job/cache.tgz", entry.path);
+        assertEquals("folder/job", entry.folder);
+        assertEquals(160, entry.size);
+        assertEquals(3, entry.modified);
+        assertTrue(entry.parts);
+    }
+
+    @Test
+    void shouldSelectByAgeUseAndOrphans() {
+        ArtifactoryRetention retention = retention(new ArtifactoryRetention.Policy(
+                TimeUnit.DAYS.toMillis(30), TimeUnit.DAYS.toMillis(7), 0, 0, true, false));
+        List<ArtifactoryRetention.Entry> entries = ArtifactoryRetention.group(
+                "jenkins",
+                Stream.of(
+                        file("jenkins/job/old.tgz", 1, days(50), days(99)),
+                        file("jenkins/job/unused.tgz", 1, days(80), days(85)),
+                        file("jenkins/job/used.tgz", 1, days(80), days(98)),
+                        file("jenkins/deleted/cache.tgz", 1, days(99), 0)));
+
+        assertEquals(
+                List.of("jenkins/job/old.tgz", "jenkins/job/unused.tgz", "jenkins/deleted/cache.tgz"),
+                paths(retention.select(entries, NOW)));
+    }
+
+    @Test
+    void shouldKeepMostRecentlyUsedWithinBudgets() {
+        ArtifactoryRetention retention = retention(new ArtifactoryRetention.Policy(0, 0, 25, 35, false, false));
+        List<ArtifactoryRetention.Entry> entries = ArtifactoryRetention.group(
+                "jenkins",
+                Stream.of(
+                        file("jenkins/a/1.tgz", 10, days(90), 0),
+                        file("jenkins/a/2.tgz", 10, days(91), 0),
+                        file("jenkins/a/3.tgz", 10, days(92), 0),
+                        file("jenkins/b/1.tgz", 10, days(95), 0),
+                        file("jenkins/b/2.tgz", 10, days(80), days(96))));
+
+        // a/1 is above the budget of job a, then a/2 is above the total budget
+        assertEquals(List.of("jenkins/a/1.tgz", "jenkins/a/2.tgz"), paths(retention.select(entries, NOW)));
+    }
+
+    @Test
+    void shouldShareJobBudgetAcrossItsFolders() {
+        ArtifactoryRetention retention = retention(new ArtifactoryRetention.Policy(0, 0, 15, 0, false, false));
+        List<ArtifactoryRetention.Entry> entries = ArtifactoryRetention.group(
+                "jenkins",
+                Stream.of(
+                        file("jenkins/a/caches/1.tgz", 10, days(90), 0),
+                        file("jenkins/a/branch/2.tgz", 10, days(91), 0),
+                        file("jenkins/b/caches/1.tgz", 10, days(92), 0)));
+
+        // Both folders of job a count against its budget
+        assertEquals(List.of("jenkins/a/caches/1.tgz"), paths(retention.select(entries, NOW)));
+        assertEquals("a", entries.get(1).job);
+    }
+
+    @Test
+    void shouldOnlyReportOnDryRun() throws Exception {
+        ArtifactoryClient client = mock(ArtifactoryClient.class);
+        doReturn(Stream.of(file("jenkins/job/old.tgz", 42, days(1), 0), file("jenkins/job/new.tgz", 1, days(99), 0)))
+                .when(client)
+                .listFiles(eq("jenkins"), anyInt(), any());
+        ArtifactoryRetention retention = new ArtifactoryRetention(
+                client,
+                "jenkins",
+                new ArtifactoryRetention.Policy(TimeUnit.DAYS.toMillis(30), 0, 0, 0, false, true),
+                folder -> folder);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ArtifactoryRetention.Report report = retention.run(new PrintStream(out, true, StandardCharsets.UTF_8));
+
+        assertEquals(1, report.evicted);
+        assertEquals(42, report.reclaimedBytes);
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("Would evict jenkins/job/old.tgz"));
+        verify(client, never()).deleteArtifact(anyString());
+    }
+
+    @Test
+    void shouldDeleteCachesAndTheirParts() throws Exception {
+        ArtifactoryClient client = mock(ArtifactoryClient.class);
+        doReturn(Stream.of(
+                        file("jenkins/job/old.tgz", 1, days(1), 0),
+                        file("jenkins/job/old.tgz.parts/uuid/00000", 41, days(1), 0)))
+                .when(client)
+                .listFiles(eq("jenkins"), anyInt(), any());
+        ArtifactoryRetention retention = new ArtifactoryRetention(
+                client,
+                "jenkins",
+                new ArtifactoryRetention.Policy(TimeUnit.DAYS.toMillis(30), 0, 0, 0, false, false),
+                folder -> folder);
+
+        ArtifactoryRetention.Report report =
+                retention.run(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+
+        assertEquals(42, report.reclaimedBytes);
+        verify(client).deleteArtifact("jenkins/job/old.tgz");
+        verify(client).deleteArtifact("jenkins/job/old.tgz.parts");
+    }
+
+    @Test
+    void shouldDeleteUnusedChunks() throws Exception {
+        ArtifactoryClient client = mock(ArtifactoryClient.class);
+        byte[] manifest = new ArtifactoryManifest(
+                        10, List.of(new ArtifactoryManifest.Segment("jenkins/.chunks/aa/aa11", 0, 10, "aa11")))
+                .toJson()
+                .getBytes(StandardCharsets.UTF_8);
+        doReturn(Stream.of(
+                        marked("jenkins/job/cache.tgz", manifest.length, "true"),
+                        marked("jenkins/other/cache.tgz", 10, "false")))
+                .when(client)
+                .listFiles(eq("jenkins"), anyInt(), any());
+        doReturn(Stream.of(
+                        file("jenkins/.chunks/aa/aa11", 10, 0, 0),
+                        file("jenkins/.chunks/bb/bb22", 20, 0, 0),
+                        file("jenkins/.chunks/cc/cc33", 30, System.currentTimeMillis(), 0)))
+                .when(client)
+                .listFiles(eq("jenkins/.chunks"), anyInt(), any());
+        doReturn(new ByteArrayInputStream(manifest)).when(client).downloadUntracked("jenkins/job/cache.tgz");
+        doReturn(file("jenkins/.chunks/bb/bb22", 20, 0, 0)).when(client).info("jenkins/.chunks/bb/bb22");
+        ArtifactoryRetention retention = new ArtifactoryRetention(
+                client,
+                "jenkins",
+                new ArtifactoryRetention.Policy(TimeUnit.DAYS.toMillis(30), 0, 0, 0, false, false),
+                folder -> folder);
+
+        ArtifactoryRetention.Report report =
+                retention.run(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+
+        assertEquals(1, report.chunks);
+        assertEquals(20, report.chunkBytes);
+        verify(client).deleteArtifact("jenkins/.chunks/bb/bb22");
+        verify(client, times(1)).deleteArtifact(anyString());
+        // Only marked manifests are read, without counting as a download
+        verify(client, times(1)).downloadUntracked(anyString());
+        verify(client, never()).downloadArtifact(anyString());
+    }
+
+    @Test
+    void shouldReadUnmarkedCachesForChunks() throws Exception {
+        ArtifactoryClient client = mock(ArtifactoryClient.class);
+        byte[] manifest = new ArtifactoryManifest(
+                        10, List.of(new ArtifactoryManifest.Segment("jenkins/.chunks/aa/aa11", 0, 10, "aa11")))
+                .toJson()
+                .getBytes(StandardCharsets.UTF_8);
+        // Saved before manifests were marked
+        doReturn(Stream.of(file("jenkins/job/cache.tgz", manifest.length, System.currentTimeMillis(), 0)))
+                .when(client)
+                .listFiles(eq("jenkins"), anyInt(), any());
+        doReturn(Stream.of(file("jenkins/.chunks/aa/aa11", 10, 0, 0)))
+                .when(client)
+                .listFiles(eq("jenkins/.chunks"), anyInt(), any());
+        doReturn(new ByteArrayInputStream(manifest)).when(client).downloadUntracked("jenkins/job/cache.tgz");
+        ArtifactoryRetention retention = new ArtifactoryRetention(
+                client,
+                "jenkins",
+                new ArtifactoryRetention.Policy(TimeUnit.DAYS.toMillis(30), 0, 0, 0, false, false),
+                folder -> folder);
+
+        ArtifactoryRetention.Report report =
+                retention.run(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+
+        assertEquals(0, report.chunks);
+        verify(client, never()).deleteArtifact(anyString());
+    }
+
+    @Test
+    void shouldKeepChunksReusedDuringCollection() throws Exception {
+        ArtifactoryClient client = mock(ArtifactoryClient.class);
+        doReturn(Stream.empty()).when(client).listFiles(eq("jenkins"), anyInt(), any());
+        doReturn(Stream.of(file("jenkins/.chunks/aa/aa11", 10, 0, 0)))
+                .when(client)
+                .listFiles(eq("jenkins/.chunks"), anyInt(), any());
+        // Deployed again by a save after the listing
+        doReturn(file("jenkins/.chunks/aa/aa11", 10, System.currentTimeMillis(), 0))
+                .when(client)
+                .info("jenkins/.chunks/aa/aa11");
+        ArtifactoryRetention retention = new ArtifactoryRetention(
+                client,
+                "jenkins",
+                new ArtifactoryRetention.Policy(TimeUnit.DAYS.toMillis(30), 0, 0, 0, false, false),
+                folder -> folder);
+
+        ArtifactoryRetention.Report report =
+                retention.run(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+
+        assertEquals(0, report.chunks);
+        verify(client).invalidate("jenkins/.chunks/aa/aa11");
+        verify(client, never()).deleteArtifact(anyString());
+    }
+
+    private static ArtifactoryRetention retention(ArtifactoryRetention.Policy policy) {
+        return new ArtifactoryRetention(
+                mock(ArtifactoryClient.class),
+                "jenkins",
+                policy,
+                folder -> folder.startsWith("deleted") ? null : folder.split("/")[0]);
+    }
+
+    private static ArtifactoryItemInfo file(String path, long size, long modified, long downloaded) {
+        return new ArtifactoryItemInfo(path, false, size, modified, null, downloaded);
+    }
+
+    private static ArtifactoryItemInfo marked(String path, long size, String manifest) {
+        return new ArtifactoryItemInfo(
+                path,
+                false,
+                size,
+                System.currentTimeMillis(),
+                null,
+                0,
+                Map.of(ArtifactoryManifest.PROPERTY, manifest));
+    }
+
+    private static long days(int days) {
+        return TimeUnit.DAYS.toMillis(days);
+    }
+
+    private static List<String> paths(List<ArtifactoryRetention.Entry> entries) {
+        return entries.stream().map(e -> e.path).collect(Collectors.toList());
+    }
+}
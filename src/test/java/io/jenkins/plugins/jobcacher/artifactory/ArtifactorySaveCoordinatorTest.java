@@ -0,0 +1,78 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Test;
+
+class ArtifactorySaveCoordinatorTest {
+
+    @Test
+    void shouldLetOnlyNewestWaitingSaveProceed() throws Exception {
+        ArtifactorySaveCoordinator coordinator = new ArtifactorySaveCoordinator(TimeUnit.MINUTES.toMillis(1), 10);
+        ArtifactorySaveCoordinator.Lease first = coordinator.acquire("key");
+        assertNotNull(first);
+
+        CompletableFuture<ArtifactorySaveCoordinator.Lease> second = acquireAsync(coordinator, "key");
+        waitUntil(() -> coordinator.getWaited() == 1);
+        CompletableFuture<ArtifactorySaveCoordinator.Lease> third = acquireAsync(coordinator, "key");
+
+        // The second save is superseded as soon as the third arrives
+        assertNull(second.get(10, TimeUnit.SECONDS));
+        assertFalse(third.isDone());
+        first.close();
+        ArtifactorySaveCoordinator.Lease newest = third.get(10, TimeUnit.SECONDS);
+        assertNotNull(newest);
+        newest.close();
+        assertEquals(1, coordinator.getSuperseded());
+    }
+
+    @Test
+    void shouldNotCoordinateDifferentKeys() throws Exception {
+        ArtifactorySaveCoordinator coordinator = new ArtifactorySaveCoordinator(TimeUnit.MINUTES.toMillis(1), 10);
+        try (ArtifactorySaveCoordinator.Lease first = coordinator.acquire("a");
+                ArtifactorySaveCoordinator.Lease second = coordinator.acquire("b")) {
+            assertNotNull(first);
+            assertNotNull(second);
+        }
+        assertEquals(0, coordinator.getWaited());
+    }
+
+    @Test
+    void shouldDetectUnchangedContent() throws Exception {
+        ArtifactorySaveCoordinator coordinator = new ArtifactorySaveCoordinator(TimeUnit.MINUTES.toMillis(1), 10);
+        try (ArtifactorySaveCoordinator.Lease lease = coordinator.acquire("key")) {
+            assertFalse(lease.isUnchanged("hash"));
+            lease.saved("hash");
+        }
+        try (ArtifactorySaveCoordinator.Lease lease = coordinator.acquire("key")) {
+            assertTrue(lease.isUnchanged("hash"));
+            assertFalse(lease.isUnchanged("other"));
+        }
+        coordinator.forget("key");
+        try (ArtifactorySaveCoordinator.Lease lease = coordinator.acquire("key")) {
+            assertFalse(lease.isUnchanged("hash"));
+        }
+    }
+
+    private static CompletableFuture<ArtifactorySaveCoordinator.Lease> acquireAsync(
+            ArtifactorySaveCoordinator coordinator, String key) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return coordinator.acquire(key);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@WireMockTest
+class ArtifactoryUploaderTest {
+
+    private static final String ARTIFACT_URL = "/my-generic-repo/jenkins/job/cache.tgz";
+
+    @TempDir
+    private Path tempDir;
+
+    private ArtifactoryClient client;
+    private ArtifactoryTransferSettings settings;
+    private File file;
+
+    @BeforeEach
+    void setUp(WireMockRuntimeInfo wireMock) throws Exception {
+        ArtifactoryMetadataCache.get().clear();
+        client = new ArtifactoryClient(
+                ArtifactoryClientPoolTest.config(wireMock.getHttpBaseUrl(), "user", "password"));
+        settings = new ArtifactoryTransferSettings();
+        settings.setStagingRoot("jenkins/.staging");
+        file = Files.writeString(tempDir.resolve("cache.tgz"), "content", StandardCharsets.UTF_8)
+                .toFile();
+        stubFor(put(urlPathMatching("/my-generic-repo/jenkins/\\.staging/.*"))
+                .willReturn(created()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"repo\":\"my-generic-repo\",\"path\":\"/jenkins/.staging/cache.tgz\"}")));
+    }
+
+    @Test
+    void shouldMoveStagedUploadToItsPath() throws Exception {
+        stubFor(put(urlPathMatching(ARTIFACT_URL + ".*"))
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(notFound()));
+        stubFor(post(urlPathMatching("/api/move/.*"))
+                .willReturn(okJson("{\"messages\":[{\"level\":\"INFO\",\"message\":\"move successful\"}]}")));
+
+        new ArtifactoryUploader(client, settings).upload(file, "jenkins/job/cache.tgz");
+
+        verify(putRequestedFor(urlPathMatching("/my-generic-repo/jenkins/\\.staging/.*-cache\\.tgz.*"))
+                .withHeader("X-Checksum-Deploy", absent())
+                .withRequestBody(equalTo("content")));
+        verify(1, postRequestedFor(urlPathMatching("/api/move/my-generic-repo/jenkins/\\.staging/.*")));
+        verify(0, putRequestedFor(urlPathMatching(ARTIFACT_URL + ".*")).withHeader("X-Checksum-Deploy", absent()));
+    }
+
+    @Test
+    void shouldDeployStagedUploadByChecksumWithoutMoveApi() throws Exception {
+        stubFor(put(urlPathMatching(ARTIFACT_URL + ".*"))
+                .inScenario("checksum")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(notFound())
+                .willSetStateTo("staged"));
+        stubFor(put(urlPathMatching(ARTIFACT_URL + ".*"))
+                .inScenario("checksum")
+                .whenScenarioStateIs("staged")
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(created()));
+        stubFor(post(urlPathMatching("/api/move/.*"))
+                .willReturn(badRequest()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"errors\":[{\"status\":400,"
+                                + "\"message\":\"This REST API is available only in Artifactory Pro\"}]}")));
+        stubFor(delete(urlPathMatching("/my-generic-repo/jenkins/\\.staging/.*")).willReturn(noContent()));
+
+        new ArtifactoryUploader(client, settings).upload(file, "jenkins/job/cache.tgz");
+
+        verify(2, putRequestedFor(urlPathMatching(ARTIFACT_URL + ".*"))
+                .withHeader("X-Checksum-Deploy", equalTo("true")));
+        verify(1, deleteRequestedFor(urlPathMatching("/my-generic-repo/jenkins/\\.staging/.*-cache\\.tgz")));
+    }
+
+    @Test
+    void shouldSkipUnchangedContentStillStored() throws Exception {
+        ArtifactoryClientTest.stubInfo(
+                "jenkins/job/cache.tgz",
+                "\"type\":\"file\",\"size\":7,\"modified\":\"2024-01-02T12:00:00.000Z\"");
+        String hash = ArtifactoryChecksums.compute(file.toPath()).getSha256();
+
+        ArtifactoryUploader.Saved saved =
+                new ArtifactoryUploader(client, settings).save(file, "jenkins/job/cache.tgz", hash, true);
+
+        assertTrue(saved.skipped);
+        assertTrue(saved.checked);
+        assertEquals(hash, saved.hash);
+        verify(0, putRequestedFor(anyUrl()));
+    }
+
+    @Test
+    void shouldUploadChangedContentWithItsHash() throws Exception {
+        stubFor(put(urlPathMatching(ARTIFACT_URL + ".*"))
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(notFound()));
+        stubFor(post(urlPathMatching("/api/move/.*"))
+                .willReturn(okJson("{\"messages\":[{\"level\":\"INFO\",\"message\":\"move successful\"}]}")));
+
+        ArtifactoryUploader.Saved saved =
+                new ArtifactoryUploader(client, settings).save(file, "jenkins/job/cache.tgz", "previous", true);
+
+        assertFalse(saved.skipped);
+        assertFalse(saved.checked);
+        assertEquals(7, saved.size);
+        assertEquals(ArtifactoryChecksums.compute(file.toPath()).getSha256(), saved.hash);
+        // Content changed, so the agent doesn't check if the previous one is stored
+        verify(0, ArtifactoryClientTest.infoRequestedFor("jenkins/job/cache.tgz"));
+        verify(putRequestedFor(urlPathMatching(ARTIFACT_URL + ".*"))
+                .withHeader("X-Checksum-Sha256", equalTo(saved.hash)));
+    }
+
+    @Test
+    void shouldNotRefreshRecentlyUpdatedChunks() throws Exception {
+        settings.setChunkRoot("jenkins/.chunks");
+        String sha1 = ArtifactoryChecksums.compute(file.toPath()).getSha1();
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":[{\"name\":\"" + sha1 + "\","
+                        + "\"modified\":\"2024-01-02T10:00:00.000Z\",\"updated\":\"" + Instant.now() + "\"}]}")));
+        stubManifestPublish();
+
+        new ArtifactoryUploader(client, settings).upload(file, "jenkins/job/cache.tgz");
+
+        verify(0, putRequestedFor(urlPathMatching("/my-generic-repo/jenkins/\\.chunks/.*")));
+    }
+
+    @Test
+    void shouldRefreshReusedChunkBeforeRetentionGrace() throws Exception {
+        settings.setChunkRoot("jenkins/.chunks");
+        String sha1 = ArtifactoryChecksums.compute(file.toPath()).getSha1();
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":[{\"name\":\"" + sha1 + "\","
+                        + "\"modified\":\"2024-01-02T10:00:00.000Z\",\"updated\":\"2024-01-02T10:00:00.000Z\"}]}")));
+        stubFor(put(urlPathMatching("/my-generic-repo/jenkins/\\.chunks/.*")).willReturn(created()));
+        stubManifestPublish();
+
+        new ArtifactoryUploader(client, settings).upload(file, "jenkins/job/cache.tgz");
+
+        verify(1, putRequestedFor(urlPathMatching("/my-generic-repo/jenkins/\\.chunks/.*")));
+        verify(putRequestedFor(urlPathEqualTo("/my-generic-repo/jenkins/.chunks/" + sha1.substring(0, 2) + "/" + sha1))
+                .withHeader("X-Checksum-Deploy", equalTo("true")));
+    }
+
+    @Test
+    void shouldKeepRecentlyReplacedParts() throws Exception {
+        settings.setMultipartThresholdMb(1);
+        stubFor(put(urlPathMatching(ARTIFACT_URL + ".*"))
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(notFound()));
+        stubFor(post(urlPathMatching("/api/move/.*"))
+                .willReturn(okJson("{\"messages\":[{\"level\":\"INFO\",\"message\":\"move successful\"}]}")));
+        ArtifactoryClientTest.stubInfo(
+                "jenkins/job/cache.tgz",
+                "\"type\":\"file\",\"size\":7,\"modified\":\"2024-01-02T12:00:00.000Z\"");
+        ArtifactoryClientTest.stubInfo("jenkins/job/cache.tgz.parts", "\"type\":\"folder\"");
+        // Upload a was replaced by upload b long ago, upload b was replaced just now
+        stubFor(post(urlPathEqualTo("/api/search/aql"))
+                .willReturn(okJson("{\"results\":["
+                        + "{\"path\":\"jenkins/job/cache.tgz.parts/a\",\"name\":\"00000\","
+                        + "\"modified\":\"2024-01-02T10:00:00.000Z\"},"
+                        + "{\"path\":\"jenkins/job/cache.tgz.parts/b\",\"name\":\"00000\","
+                        + "\"modified\":\"2024-01-02T11:00:00.000Z\"}]}")));
+        stubFor(delete(urlPathMatching(ARTIFACT_URL + "\\.parts/.*")).willReturn(noContent()));
+
+        new ArtifactoryUploader(client, settings).upload(file, "jenkins/job/cache.tgz");
+
+        verify(1, deleteRequestedFor(urlPathEqualTo(ARTIFACT_URL + ".parts/a")));
+        verify(0, deleteRequestedFor(urlPathEqualTo(ARTIFACT_URL + ".parts/b")));
+        verify(0, deleteRequestedFor(urlPathEqualTo(ARTIFACT_URL + ".parts")));
+    }
+
+    private static void stubManifestPublish() {
+        stubFor(put(urlPathMatching(ARTIFACT_URL + ".*"))
+                .withHeader("X-Checksum-Deploy", equalTo("true"))
+                .willReturn(notFound()));
+        stubFor(post(urlPathMatching("/api/move/.*"))
+                .willReturn(okJson("{\"messages\":[{\"level\":\"INFO\",\"message\":\"move successful\"}]}")));
+    }
+}
@@ -0,0 +1,40 @@
+package io.jenkins.plugins.jobcacher.artifactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class UtilsTest {
+
+    @Test
+    void shouldResolveCredentialsAgainAfterStoreChange(JenkinsRule jenkins) throws Exception {
+        Utils.invalidateCredentials();
+        SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+        assertThat(Utils.getCredentials("artifactory"), is(nullValue()));
+
+        provider.getCredentials().add(credentials("first"));
+        provider.save();
+        assertThat(Utils.getCredentials("artifactory").getPassword().getPlainText(), is("first"));
+
+        // Changed without saving, the resolved credentials are kept
+        provider.getCredentials().clear();
+        provider.getCredentials().add(credentials("second"));
+        assertThat(Utils.getCredentials("artifactory").getPassword().getPlainText(), is("first"));
+
+        provider.save();
+        assertThat(Utils.getCredentials("artifactory").getPassword().getPlainText(), is("second"));
+    }
+
+    private static UsernamePasswordCredentialsImpl credentials(String password) throws Exception {
+        return new UsernamePasswordCredentialsImpl(
+                CredentialsScope.GLOBAL, "artifactory", null, "user", password);
+    }
+}